@@ -0,0 +1,113 @@
+package com.jjuncoder.sideproject.earthquake.benchmark
+
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.util.Log
+import android.view.LayoutInflater
+import android.view.View
+import android.view.ViewGroup
+import android.widget.FrameLayout
+import androidx.appcompat.view.ContextThemeWrapper
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.jjuncoder.sideproject.R
+import com.jjuncoder.sideproject.databinding.ListItemEarthquakeBinding
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import com.jjuncoder.sideproject.earthquake.view.EarthquakeRowView
+import com.jjuncoder.sideproject.earthquake.viewmodel.EarthquakeRowText
+import com.jjuncoder.sideproject.earthquake.viewmodel.EarthquakeRowTexts
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.*
+
+/**
+ * Inflate, bind and draw time per row, custom drawn EarthquakeRowView against the former data bound ConstraintLayout.
+ * Results are logged, e.g. `./gradlew connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=com.jjuncoder.sideproject.earthquake.benchmark.EarthquakeRowBenchmark`
+ * then `adb logcat -s EarthquakeRowBenchmark`
+ */
+@RunWith(AndroidJUnit4::class)
+class EarthquakeRowBenchmark {
+    companion object {
+        private const val TAG = "EarthquakeRowBenchmark"
+        private const val ROWS = 2_000
+        private const val ROUNDS = 5
+    }
+
+    private val context = ContextThemeWrapper(InstrumentationRegistry.getInstrumentation().targetContext, R.style.Theme_SideProject)
+    private val parent = FrameLayout(context)
+    private val random = Random(7)
+    private val earthquakes = List(ROWS) {
+        Earthquake("us$it", 1_616_233_712_040L - it * 60_000L, "${it % 97} km NNE of Ōfunato, Japan", 38.4, 142.1, random.nextInt(80) / 10.0)
+    }
+    private val rowTexts = EarthquakeRowTexts().apply { prepare(earthquakes) }
+    private val texts: List<EarthquakeRowText> = earthquakes.map { rowTexts[it] }
+    private val widthSpec = View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY)
+    private val heightSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED)
+    private val canvas = Canvas(Bitmap.createBitmap(1080, 400, Bitmap.Config.ARGB_8888))
+    private var sink = 0
+
+    private fun measure(name: String, block: () -> Unit) {
+        block()
+        val startNanos = System.nanoTime()
+        repeat(ROUNDS) { block() }
+        val elapsedNanos = System.nanoTime() - startNanos
+        Log.i(TAG, String.format(Locale.US, "%-30s : %8.0f ns/row", name, elapsedNanos.toDouble() / ROUNDS / ROWS))
+    }
+
+    private fun layout(view: View) {
+        view.measure(widthSpec, heightSpec)
+        view.layout(0, 0, view.measuredWidth, view.measuredHeight)
+        sink += view.measuredHeight
+    }
+
+    private fun draw(view: View) {
+        canvas.save()
+        view.draw(canvas)
+        canvas.restore()
+    }
+
+    private fun inflateConstraintRow() =
+        ListItemEarthquakeBinding.inflate(LayoutInflater.from(context), parent, false).also {
+            it.root.layoutParams = FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT)
+        }
+
+    private fun bindConstraintRow(binding: ListItemEarthquakeBinding, index: Int) {
+        binding.row = texts[index]
+        binding.earthquake = earthquakes[index]
+        binding.executePendingBindings()
+        binding.distanceText.text = "1,234 km NNE"
+        layout(binding.root)
+    }
+
+    private fun bindCustomRow(view: EarthquakeRowView, index: Int) {
+        view.bind(texts[index], earthquakes[index].details)
+        view.distance = "1,234 km NNE"
+        layout(view)
+    }
+
+    @Test
+    fun customRowVersusConstraintLayout() = InstrumentationRegistry.getInstrumentation().runOnMainSync {
+        measure("inflate ConstraintLayout") { repeat(ROWS) { sink += inflateConstraintRow().root.id } }
+        measure("inflate EarthquakeRowView") { repeat(ROWS) { sink += EarthquakeRowView(context).id } }
+
+        // a recycled holder is bound again and again, like while flinging
+        val binding = inflateConstraintRow()
+        val rowView = EarthquakeRowView(context)
+        measure("bind ConstraintLayout") { repeat(ROWS) { bindConstraintRow(binding, it) } }
+        measure("bind EarthquakeRowView") { repeat(ROWS) { bindCustomRow(rowView, it) } }
+
+        measure("bind + draw ConstraintLayout") {
+            repeat(ROWS) {
+                bindConstraintRow(binding, it)
+                draw(binding.root)
+            }
+        }
+        measure("bind + draw EarthquakeRowView") {
+            repeat(ROWS) {
+                bindCustomRow(rowView, it)
+                draw(rowView)
+            }
+        }
+        Log.i(TAG, "sink : $sink")
+    }
+}
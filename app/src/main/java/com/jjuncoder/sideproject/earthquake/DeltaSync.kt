@@ -0,0 +1,60 @@
+package com.jjuncoder.sideproject.earthquake
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * [HighWaterMark] of every feed, so a refresh stops parsing a feed at its first already known entry
+ * and only returns the delta. Marks only live as long as this object, the first refresh after it reads everything.
+ */
+class DeltaSync {
+    /**
+     * @param bytesParsed bytes consumed by the parsers.
+     * @param bytesDrained bytes read after a parser stopped early, only to copy a cached body to disk to the end.
+     * @param feedsStoppedEarly feeds whose reading stopped at the high-water mark.
+     */
+    data class Stats(
+        val bytesParsed: Long,
+        val bytesDrained: Long,
+        val entriesParsed: Int,
+        val feedsStoppedEarly: Int
+    ) {
+        /** Everything read from the network or the cache. */
+        val bytesRead: Long
+            get() = bytesParsed + bytesDrained
+
+        operator fun minus(other: Stats): Stats = Stats(
+            bytesParsed - other.bytesParsed,
+            bytesDrained - other.bytesDrained,
+            entriesParsed - other.entriesParsed,
+            feedsStoppedEarly - other.feedsStoppedEarly
+        )
+    }
+
+    private val marks = ConcurrentHashMap<String, HighWaterMark>()
+    private val bytesParsed = AtomicLong()
+    private val bytesDrained = AtomicLong()
+    private val entriesParsed = AtomicInteger()
+    private val feedsStoppedEarly = AtomicInteger()
+
+    val stats: Stats
+        get() = Stats(bytesParsed.get(), bytesDrained.get(), entriesParsed.get(), feedsStoppedEarly.get())
+
+    fun highWaterMark(spec: FeedSpec): HighWaterMark? = marks[spec.url]
+
+    /**
+     * Forgets every mark, e.g. when the entries returned since could not be stored.
+     */
+    fun reset() {
+        marks.clear()
+    }
+
+    internal fun record(spec: FeedSpec, mark: HighWaterMark?, parsed: Long, drained: Long, entries: Int, stoppedEarly: Boolean) {
+        if (mark != null) marks[spec.url] = mark
+        bytesParsed.addAndGet(parsed)
+        bytesDrained.addAndGet(drained)
+        entriesParsed.addAndGet(entries)
+        if (stoppedEarly) feedsStoppedEarly.incrementAndGet()
+    }
+}
@@ -1,101 +1,421 @@
 package com.jjuncoder.sideproject.earthquake
 
-import android.location.Location
 import android.util.Log
 import androidx.annotation.WorkerThread
+import com.jjuncoder.sideproject.earthquake.db.EarthquakeDao
+import com.jjuncoder.sideproject.earthquake.db.EarthquakeEntity
 import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import com.jjuncoder.sideproject.earthquake.parser.EarthquakeFeedParser
+import com.jjuncoder.sideproject.earthquake.parser.PullFeedParser
 import com.jjuncoder.sideproject.earthquake.viewmodel.EarthquakeViewModel
-import org.w3c.dom.Element
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.retryWhen
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import kotlinx.coroutines.withContext
+import java.io.Closeable
+import java.io.FilterInputStream
+import java.io.IOException
+import java.io.InputStream
 import java.net.HttpURLConnection
 import java.net.MalformedURLException
 import java.net.URL
-import java.text.SimpleDateFormat
 import java.util.*
-import javax.xml.parsers.DocumentBuilderFactory
+import java.util.concurrent.TimeUnit
 
 object EarthquakeDataLoader {
     const val FEED_URL = "https://earthquake.usgs.gov/earthquakes/feed/v1.0/summary/2.5_day.atom"
+    const val DEFAULT_MAX_CONCURRENCY = 4
+    const val DEFAULT_FIRST_BATCH_SIZE = 10
+    const val DEFAULT_BATCH_SIZE = 200
+    const val CONNECT_TIMEOUT_MILLIS = 15_000
+    const val READ_TIMEOUT_MILLIS = 20_000
 
+    /**
+     * @param earthquakes null when the feed was not modified and did not have to be parsed again.
+     * @param error set when the feed failed, the other feeds of the same [loadFeeds] call are not affected.
+     */
+    data class FeedResult(
+        val spec: FeedSpec,
+        val earthquakes: List<Earthquake>?,
+        val latencyMillis: Long,
+        val error: Exception? = null
+    )
+
+    /**
+     * @param earthquakes entries of every feed merged by id, newest first.
+     */
+    data class MultiFeedResult(
+        val earthquakes: List<Earthquake>,
+        val feeds: List<FeedResult>
+    ) {
+        val isUnchanged: Boolean
+            get() = feeds.all { it.earthquakes == null && it.error == null }
+    }
+
+    /**
+     * @param parser [PullFeedParser] streams the response, [com.jjuncoder.sideproject.earthquake.parser.DomFeedParser] builds the whole DOM first.
+     * @param cache when set, the feed is revalidated with a conditional GET instead of downloaded again.
+     * @param reparseUnchanged whether a feed the [cache] reports as unchanged is parsed again from disk.
+     * @param highWaterMark when set, reading stops at the first entry older than the mark and only newer entries are returned.
+     * @return null only when the feed was not modified and [reparseUnchanged] is false.
+     */
     @WorkerThread
-    fun loadEarthquakes(): ArrayList<Earthquake> {
-        val result = ArrayList<Earthquake>()
+    fun loadEarthquakes(
+        parser: EarthquakeFeedParser = PullFeedParser(),
+        cache: EarthquakeFeedCache? = null,
+        reparseUnchanged: Boolean = true,
+        feedUrl: String = FEED_URL,
+        highWaterMark: HighWaterMark? = null
+    ): ArrayList<Earthquake>? {
         try {
-            val url = URL(FEED_URL)
-            val urlConnection = url.openConnection() as HttpURLConnection
-            urlConnection.requestMethod = "GET"
-            if (urlConnection.responseCode == HttpURLConnection.HTTP_OK) {
-                val documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder()
-                val dom = documentBuilder.parse(urlConnection.inputStream)
-                val element = dom.documentElement
-
-                val nodeList = element.getElementsByTagName("entry")
-                if (nodeList != null && nodeList.length > 0) {
-                    for (i in 0..nodeList.length) {
-                        Log.d(EarthquakeViewModel.TAG, nodeList.toString())
-                        nodeList.item(i).let {
-                            if (it != null) {
-                                Log.d(EarthquakeViewModel.TAG, it.toString())
-                                result.add(parseNode(it as Element))
-                            }
-                        }
-                    }
-                }
-            }
-            urlConnection.disconnect()
-
+            return fetchFeed(URL(feedUrl), parser, cache, reparseUnchanged, highWaterMark)
         } catch (e: MalformedURLException) {
             Log.e(EarthquakeViewModel.TAG, "MalformedURLException", e)
         } catch (e: Exception) {
             Log.e(EarthquakeViewModel.TAG, "other exception", e)
         }
-        return result
+        return ArrayList()
     }
 
-    private fun parseNode(entry: Element): Earthquake {
-        entry.apply {
-            val id = getElementsByTagName("id").item(0).firstChild.nodeValue
-            val geo = getElementsByTagName("georss:point").item(0)
-            val updatedWhen = getElementsByTagName("updated").item(0)
-            val link = getElementsByTagName("link").item(0).attributes
-            val hostname = "http://earthquake.usgs.gov"
-            val linkString = hostname + link.getNamedItem("href")
-            val point = geo.firstChild.nodeValue
-            val date = updatedWhen.firstChild.nodeValue
-            val dateFormatted: Date =
-                try {
-                    SimpleDateFormat("yyyy-MM-dd'T'hh:mm:ss.SSS'Z'", Locale.KOREA).parse(date)
-                        ?: GregorianCalendar(0, 0, 0).time
-                } catch (e: Exception) {
-                    Log.e(EarthquakeViewModel.TAG, "Date parsing exception", e)
-                    GregorianCalendar(0, 0, 0).time
+    /**
+     * Fetches and parses [specs] in parallel, at most [maxConcurrency] at a time,
+     * and merges them by id keeping the most recently updated entry.
+     * @param parser used for every feed instead of the one of its [FeedSpec.format].
+     * @param deltaSync when set, only the entries newer than each feed's high-water mark are returned.
+     */
+    suspend fun loadFeeds(
+        specs: Collection<FeedSpec>,
+        maxConcurrency: Int = DEFAULT_MAX_CONCURRENCY,
+        cache: EarthquakeFeedCache? = null,
+        reparseUnchanged: Boolean = true,
+        parser: EarthquakeFeedParser? = null,
+        retryPolicy: RetryPolicy = RetryPolicy(),
+        deltaSync: DeltaSync? = null
+    ): MultiFeedResult = coroutineScope {
+        val semaphore = Semaphore(maxConcurrency)
+        val feeds = specs.map { spec ->
+            async(Dispatchers.IO) {
+                semaphore.withPermit { loadFeed(spec, parser, cache, reparseUnchanged, retryPolicy, deltaSync) }
+            }
+        }.awaitAll()
+
+        val merged = HashMap<String, Earthquake>()
+        for (feed in feeds) {
+            Log.i(EarthquakeViewModel.TAG, "feed ${feed.spec.name} : ${feed.earthquakes?.size} entries in ${feed.latencyMillis}ms, error : ${feed.error}")
+            feed.earthquakes?.forEach { earthquake ->
+                val known = merged[earthquake.id]
+                if (known == null || known.updated < earthquake.updated) {
+                    merged[earthquake.id] = earthquake
+                }
+            }
+        }
+        MultiFeedResult(merged.values.sortedByDescending { it.updated }, feeds)
+    }
+
+    /**
+     * Emits the entries of [spec] in small batches while the response is still being read,
+     * so the first rows can be shown long before the whole feed is parsed.
+     * The first batch holds [firstBatchSize] entries, the following ones [batchSize].
+     * Nothing is emitted when the [cache] reports the feed as unchanged and [reparseUnchanged] is false.
+     * A retried feed is emitted again from its first entry.
+     * With [deltaSync], only the entries newer than the feed's high-water mark are emitted,
+     * and the mark moves once the feed was read.
+     */
+    fun loadBatches(
+        spec: FeedSpec,
+        cache: EarthquakeFeedCache? = null,
+        reparseUnchanged: Boolean = true,
+        parser: EarthquakeFeedParser? = null,
+        deltaSync: DeltaSync? = null,
+        firstBatchSize: Int = DEFAULT_FIRST_BATCH_SIZE,
+        batchSize: Int = DEFAULT_BATCH_SIZE,
+        retryPolicy: RetryPolicy = RetryPolicy()
+    ): Flow<List<Earthquake>> = flow {
+        openFeed(URL(spec.url), cache, reparseUnchanged)?.use { feed ->
+            feed.abortOnCancel {
+                val mark = deltaSync?.highWaterMark(spec)
+                var newMark = mark
+                var batch = ArrayList<Earthquake>(firstBatchSize)
+                var limit = firstBatchSize
+                val read = feed.readNewerThan(parser ?: spec.format.newParser(), mark) {
+                    batch.add(it)
+                    if (batch.size >= limit) {
+                        newMark = HighWaterMark.of(batch)?.plus(newMark)
+                        emit(batch)
+                        limit = batchSize
+                        batch = ArrayList(limit)
+                    }
+                }
+                if (batch.isNotEmpty()) {
+                    newMark = HighWaterMark.of(batch)?.plus(newMark)
+                    emit(batch)
                 }
-            val location = point.split(" ")
-            val dummyLocation = Location("dummyGPS").apply {
-                latitude = location[0].toDouble()
-                longitude = location[1].toDouble()
+                deltaSync?.record(spec, newMark, read.bytesParsed, read.bytesDrained, read.entriesParsed, read.stoppedEarly)
             }
-            val details = getElementsByTagName("title").item(0).firstChild.nodeValue.apply {
-                if (contains("-")) {
-                    split("-")[1].trim()
+        }
+    }.retryWhen { cause, attempt ->
+        retryPolicy.shouldRetry(cause, attempt.toInt()).also { retry ->
+            if (retry) delay(retryPolicy.delayMillis(attempt.toInt()))
+        }
+    }.flowOn(Dispatchers.IO)
+
+    /**
+     * [loadBatches] of every spec, at most [maxConcurrency] feeds at a time.
+     * A failed feed is logged and handed to [onFailure], from any thread, and completes without failing the others.
+     */
+    fun loadBatches(
+        specs: Collection<FeedSpec>,
+        maxConcurrency: Int = DEFAULT_MAX_CONCURRENCY,
+        cache: EarthquakeFeedCache? = null,
+        reparseUnchanged: Boolean = true,
+        parser: EarthquakeFeedParser? = null,
+        retryPolicy: RetryPolicy = RetryPolicy(),
+        deltaSync: DeltaSync? = null,
+        onFailure: (FeedSpec, Exception) -> Unit = { _, _ -> }
+    ): Flow<List<Earthquake>> = channelFlow {
+        val semaphore = Semaphore(maxConcurrency)
+        specs.forEach { spec ->
+            launch {
+                semaphore.withPermit {
+                    try {
+                        loadBatches(spec, cache, reparseUnchanged, parser, deltaSync, retryPolicy = retryPolicy).collect { send(it) }
+                    } catch (e: CancellationException) {
+                        throw e
+                    } catch (e: Exception) {
+                        // also a body the parser rejects, e.g. a truncated feed or an HTML error page sent with 200
+                        Log.e(EarthquakeViewModel.TAG, "failed to load ${spec.name}", e)
+                        onFailure(spec, e)
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads [specs] and upserts the merged entries into [dao] in one transaction.
+     * @return the number of upserted rows, or null when the store is already up to date.
+     */
+    suspend fun refreshStore(
+        dao: EarthquakeDao,
+        specs: Collection<FeedSpec>,
+        cache: EarthquakeFeedCache? = null,
+        reparseUnchanged: Boolean = true,
+        parser: EarthquakeFeedParser? = null,
+        retryPolicy: RetryPolicy = RetryPolicy(),
+        deltaSync: DeltaSync? = null
+    ): Int? {
+        val result = loadFeeds(specs, cache = cache, reparseUnchanged = reparseUnchanged, parser = parser, retryPolicy = retryPolicy, deltaSync = deltaSync)
+        if (result.isUnchanged) {
+            return null
+        }
+        if (result.earthquakes.isNotEmpty()) {
+            try {
+                withContext(Dispatchers.IO) {
+                    dao.upsertAll(result.earthquakes.map { EarthquakeEntity.from(it) })
                 }
+            } catch (e: Throwable) {
+                // the marks already moved past entries that never reached the store
+                deltaSync?.reset()
+                throw e
             }
-            val magnitudeString = details.split(" ")[1]
-            val magnitude =
-                magnitudeString.substring(0, magnitudeString.length - 1)
-                    .toDouble()
-
-
-            val earthquake =
-                Earthquake(
-                    id,
-                    dateFormatted,
-                    details,
-                    dummyLocation,
-                    magnitude,
-                    linkString
-                )
-            Log.d(EarthquakeViewModel.TAG, "earthquake : $earthquake")
-            return earthquake
         }
+        return result.earthquakes.size
     }
-}
\ No newline at end of file
+
+    private suspend fun loadFeed(
+        spec: FeedSpec,
+        parser: EarthquakeFeedParser?,
+        cache: EarthquakeFeedCache?,
+        reparseUnchanged: Boolean,
+        retryPolicy: RetryPolicy,
+        deltaSync: DeltaSync?
+    ): FeedResult {
+        val startNanos = System.nanoTime()
+        return try {
+            val earthquakes = retryPolicy.withRetries {
+                openFeed(URL(spec.url), cache, reparseUnchanged)?.use { feed ->
+                    feed.abortOnCancel {
+                        val mark = deltaSync?.highWaterMark(spec)
+                        val result = ArrayList<Earthquake>()
+                        val read = feed.readNewerThan(parser ?: spec.format.newParser(), mark) { result.add(it) }
+                        deltaSync?.record(spec, HighWaterMark.of(result)?.plus(mark) ?: mark, read.bytesParsed, read.bytesDrained, read.entriesParsed, read.stoppedEarly)
+                        result
+                    }
+                }
+            }
+            FeedResult(spec, earthquakes, elapsedMillis(startNanos))
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            Log.e(EarthquakeViewModel.TAG, "failed to load ${spec.name}", e)
+            FeedResult(spec, null, elapsedMillis(startNanos), e)
+        }
+    }
+
+    @WorkerThread
+    @Throws(IOException::class)
+    private fun fetchFeed(
+        url: URL,
+        parser: EarthquakeFeedParser,
+        cache: EarthquakeFeedCache?,
+        reparseUnchanged: Boolean,
+        highWaterMark: HighWaterMark?
+    ): ArrayList<Earthquake>? =
+        openFeed(url, cache, reparseUnchanged)?.use { feed ->
+            ArrayList<Earthquake>().also { result -> feed.readNewerThan(parser, highWaterMark) { result.add(it) } }
+        }
+
+    private class DeltaRead(
+        val bytesParsed: Long,
+        val bytesDrained: Long,
+        val entriesParsed: Int,
+        val stoppedEarly: Boolean
+    )
+
+    /**
+     * Hands every entry newer than [mark] to [consume] and stops parsing at the first older one,
+     * then marks the body as read. A cached body is still copied to the end, a plain connection is just dropped.
+     * Bytes read only for that copy are counted apart from the parsed ones.
+     */
+    private inline fun FeedStream.readNewerThan(
+        parser: EarthquakeFeedParser,
+        mark: HighWaterMark?,
+        consume: (Earthquake) -> Unit
+    ): DeltaRead {
+        val counted = CountingInputStream(stream)
+        var entries = 0
+        var stoppedEarly = false
+        for (earthquake in parser.parse(counted)) {
+            entries++
+            if (mark != null) {
+                if (mark.isPassed(earthquake)) {
+                    stoppedEarly = true
+                    break
+                }
+                if (mark.isKnown(earthquake)) continue
+            }
+            consume(earthquake)
+        }
+        val bytesParsed = counted.count
+        val bytesDrained = complete()
+        return DeltaRead(bytesParsed, bytesDrained, entries, stoppedEarly)
+    }
+
+    private class CountingInputStream(input: InputStream) : FilterInputStream(input) {
+        var count = 0L
+            private set
+
+        override fun read(): Int = super.read().also { if (it >= 0) count++ }
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int =
+            super.read(b, off, len).also { if (it > 0) count += it }
+
+        override fun skip(n: Long): Long = super.skip(n).also { count += it }
+    }
+
+    /**
+     * Runs [block] while watching for cancellation. A read blocked on the socket never sees it,
+     * so the connection is dropped under it instead and the read fails right away.
+     */
+    private suspend fun <T> FeedStream.abortOnCancel(block: suspend () -> T): T = coroutineScope {
+        val watchdog = launch(start = CoroutineStart.UNDISPATCHED) {
+            suspendCancellableCoroutine<Unit> { continuation ->
+                continuation.invokeOnCancellation { abort() }
+            }
+        }
+        try {
+            block()
+        } catch (e: Exception) {
+            // the read failed because of the abort, report the cancellation instead
+            ensureActive()
+            throw e
+        } finally {
+            watchdog.cancel()
+        }
+    }
+
+    /**
+     * Body of one feed, read either from the network or from the [EarthquakeFeedCache].
+     */
+    private class FeedStream(
+        val stream: InputStream,
+        private val onComplete: () -> Long,
+        private val onClose: () -> Unit,
+        private val onAbort: () -> Unit
+    ) : Closeable {
+        /**
+         * Marks the body as fully read, a cached copy is only kept after this.
+         * @return bytes that still had to be read after the parser stopped.
+         */
+        fun complete() = onComplete()
+
+        /** Drops the connection, may be called from any thread. */
+        fun abort() = onAbort()
+
+        override fun close() = onClose()
+    }
+
+    /**
+     * @return null when the [cache] reports the feed as unchanged and [reparseUnchanged] is false.
+     */
+    @WorkerThread
+    @Throws(IOException::class)
+    private fun openFeed(url: URL, cache: EarthquakeFeedCache?, reparseUnchanged: Boolean): FeedStream? {
+        if (cache != null) {
+            val response = cache.open(url)
+            if (response is EarthquakeFeedCache.Response.NotModified && !reparseUnchanged) {
+                Log.i(EarthquakeViewModel.TAG, "feed not modified, cache stats : ${cache.stats}")
+                response.close()
+                return null
+            }
+            return FeedStream(
+                response.stream,
+                { if (response is EarthquakeFeedCache.Response.Modified) response.commit() else 0L },
+                { response.close() },
+                { response.abort() }
+            )
+        }
+
+        val urlConnection = url.openConnection() as HttpURLConnection
+        try {
+            urlConnection.requestMethod = "GET"
+            urlConnection.connectTimeout = CONNECT_TIMEOUT_MILLIS
+            urlConnection.readTimeout = READ_TIMEOUT_MILLIS
+            val responseCode = urlConnection.responseCode
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw HttpStatusException(responseCode, url)
+            }
+            val stream = urlConnection.inputStream
+            return FeedStream(stream, { 0L }, {
+                try {
+                    stream.close()
+                } catch (e: IOException) {
+                    // already dropped by abort()
+                } finally {
+                    urlConnection.disconnect()
+                }
+            }, { urlConnection.disconnect() })
+        } catch (e: IOException) {
+            urlConnection.disconnect()
+            throw e
+        }
+    }
+
+    private fun elapsedMillis(startNanos: Long): Long =
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)
+}
@@ -0,0 +1,240 @@
+package com.jjuncoder.sideproject.earthquake
+
+import androidx.annotation.WorkerThread
+import java.io.Closeable
+import java.io.File
+import java.io.FilterInputStream
+import java.io.IOException
+import java.io.InputStream
+import java.net.HttpURLConnection
+import java.net.URL
+import java.security.MessageDigest
+import java.util.*
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * On-disk cache of feed bodies with their ETag / Last-Modified validators.
+ * Every [open] is a conditional GET, so an unchanged feed costs a 304 instead of a full download.
+ * The first [open] deletes files of [directory] that are not named after a current key, e.g. of an older key format.
+ */
+class EarthquakeFeedCache(
+    private val directory: File,
+    private val connectTimeoutMillis: Int = EarthquakeDataLoader.CONNECT_TIMEOUT_MILLIS,
+    private val readTimeoutMillis: Int = EarthquakeDataLoader.READ_TIMEOUT_MILLIS
+) {
+    companion object {
+        private const val BODY_SUFFIX = ".body"
+        private const val META_SUFFIX = ".meta"
+        private const val KEY_ETAG = "etag"
+        private const val KEY_LAST_MODIFIED = "last-modified"
+        // hex digits of a SHA-256
+        private const val KEY_LENGTH = 64
+    }
+
+    sealed class Response : Closeable {
+        abstract val stream: InputStream
+
+        /**
+         * Drops the connection from any thread, so a read blocked on the network fails right away.
+         */
+        open fun abort() {}
+
+        /**
+         * The server sent a new body. [stream] reads it from the network and copies it into the cache at the same time,
+         * the copy replaces the cached body only once [commit] is called.
+         */
+        class Modified internal constructor(
+            private val connection: HttpURLConnection,
+            private val source: InputStream,
+            private val tempFile: File,
+            private val onCommit: (File) -> Unit
+        ) : Response() {
+            private val output = tempFile.outputStream().buffered()
+            private var committed = false
+
+            override val stream: InputStream = object : FilterInputStream(source) {
+                override fun read(): Int = super.read().also { if (it >= 0) output.write(it) }
+
+                override fun read(b: ByteArray, off: Int, len: Int): Int =
+                    super.read(b, off, len).also { if (it > 0) output.write(b, off, it) }
+
+                // skipped bytes still have to reach the cache
+                override fun skip(n: Long): Long {
+                    val buffer = ByteArray(minOf(n, 8 * 1024L).toInt())
+                    val read = read(buffer, 0, buffer.size)
+                    return if (read < 0) 0 else read.toLong()
+                }
+            }
+
+            /**
+             * Reads whatever the parser left after the end of the document and stores the body.
+             * @return bytes read here, the rest of the body when the parser stopped early.
+             */
+            @Throws(IOException::class)
+            fun commit(): Long {
+                val buffer = ByteArray(8 * 1024)
+                var drained = 0L
+                while (true) {
+                    // copied into the cache by the stream itself
+                    val read = stream.read(buffer)
+                    if (read < 0) break
+                    drained += read
+                }
+                output.close()
+                onCommit(tempFile)
+                committed = true
+                return drained
+            }
+
+            override fun abort() {
+                connection.disconnect()
+            }
+
+            override fun close() {
+                try {
+                    output.close()
+                    source.close()
+                } catch (e: IOException) {
+                    // the body is dropped anyway when it was not committed
+                } finally {
+                    if (!committed) tempFile.delete()
+                    connection.disconnect()
+                }
+            }
+        }
+
+        /** The server answered 304, the cached [body] is still current. */
+        class NotModified(val body: File) : Response() {
+            private var opened: InputStream? = null
+
+            override val stream: InputStream
+                get() = opened ?: body.inputStream().buffered().also { opened = it }
+
+            override fun close() {
+                opened?.close()
+            }
+        }
+    }
+
+    data class Stats(
+        val hits: Int,
+        val misses: Int,
+        val revalidations: Int,
+        val bytesSaved: Long
+    )
+
+    private val hits = AtomicInteger()
+    private val misses = AtomicInteger()
+    private val revalidations = AtomicInteger()
+    private val bytesSaved = AtomicLong()
+
+    val stats: Stats
+        get() = Stats(hits.get(), misses.get(), revalidations.get(), bytesSaved.get())
+
+    private val isPruned = AtomicBoolean()
+
+    /**
+     * Sends the conditional GET. The caller has to close the returned [Response].
+     */
+    @WorkerThread
+    @Throws(IOException::class)
+    fun open(url: URL): Response {
+        if (isPruned.compareAndSet(false, true)) deleteStaleFiles()
+        val key = keyOf(url)
+        val bodyFile = File(directory, key + BODY_SUFFIX)
+        val metaFile = File(directory, key + META_SUFFIX)
+        val validators = if (bodyFile.exists()) readValidators(metaFile) else Properties()
+
+        val urlConnection = url.openConnection() as HttpURLConnection
+        try {
+            urlConnection.requestMethod = "GET"
+            urlConnection.useCaches = false
+            urlConnection.connectTimeout = connectTimeoutMillis
+            urlConnection.readTimeout = readTimeoutMillis
+            validators.getProperty(KEY_ETAG)?.let { urlConnection.setRequestProperty("If-None-Match", it) }
+            validators.getProperty(KEY_LAST_MODIFIED)?.let { urlConnection.setRequestProperty("If-Modified-Since", it) }
+            if (!validators.isEmpty) {
+                revalidations.incrementAndGet()
+            }
+
+            return when (val responseCode = urlConnection.responseCode) {
+                HttpURLConnection.HTTP_NOT_MODIFIED -> {
+                    urlConnection.disconnect()
+                    hits.incrementAndGet()
+                    bytesSaved.addAndGet(bodyFile.length())
+                    Response.NotModified(bodyFile)
+                }
+                HttpURLConnection.HTTP_OK -> {
+                    misses.incrementAndGet()
+                    directory.mkdirs()
+                    val etag = urlConnection.getHeaderField("ETag")
+                    val lastModified = urlConnection.getHeaderField("Last-Modified")
+                    Response.Modified(
+                        urlConnection,
+                        urlConnection.inputStream,
+                        File.createTempFile(key, null, directory)
+                    ) { tempFile ->
+                        if (!tempFile.renameTo(bodyFile)) {
+                            throw IOException("Can't move feed body to $bodyFile")
+                        }
+                        writeValidators(metaFile, etag, lastModified)
+                    }
+                }
+                else -> throw HttpStatusException(responseCode, url)
+            }
+        } catch (e: IOException) {
+            urlConnection.disconnect()
+            throw e
+        }
+    }
+
+    /**
+     * Revalidates [url] and returns the cached body, downloading it first when it changed.
+     */
+    @WorkerThread
+    @Throws(IOException::class)
+    fun fetch(url: URL): File =
+        when (val response = open(url)) {
+            is Response.NotModified -> response.body
+            is Response.Modified -> response.use {
+                it.commit()
+                File(directory, keyOf(url) + BODY_SUFFIX)
+            }
+        }
+
+    // hex SHA-256 of the URL, the body, validators and temporary files of an entry all start with it
+    private fun keyOf(url: URL): String =
+        MessageDigest.getInstance("SHA-256").digest(url.toString().toByteArray(Charsets.UTF_8)).joinToString("") { "%02x".format(it) }
+
+    private fun deleteStaleFiles() {
+        directory.listFiles()?.forEach { file ->
+            val name = file.name
+            val isCurrent = name.length > KEY_LENGTH && (0 until KEY_LENGTH).all { name[it] in '0'..'9' || name[it] in 'a'..'f' }
+            if (!isCurrent) file.delete()
+        }
+    }
+
+    private fun readValidators(metaFile: File): Properties = Properties().apply {
+        if (metaFile.exists()) {
+            try {
+                metaFile.inputStream().use { load(it) }
+            } catch (e: IOException) {
+                clear()
+            }
+        }
+    }
+
+    private fun writeValidators(metaFile: File, etag: String?, lastModified: String?) {
+        val properties = Properties().apply {
+            etag?.let { setProperty(KEY_ETAG, it) }
+            lastModified?.let { setProperty(KEY_LAST_MODIFIED, it) }
+        }
+        val tempFile = File.createTempFile(metaFile.name, null, directory)
+        tempFile.outputStream().use { properties.store(it, null) }
+        if (!tempFile.renameTo(metaFile)) {
+            tempFile.delete()
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.jjuncoder.sideproject.earthquake
+
+import com.jjuncoder.sideproject.earthquake.parser.EarthquakeFeedParser
+import com.jjuncoder.sideproject.earthquake.parser.GeoJsonFeedParser
+import com.jjuncoder.sideproject.earthquake.parser.PullFeedParser
+
+/**
+ * One USGS summary feed, e.g. "2.5_day".
+ * See https://earthquake.usgs.gov/earthquakes/feed/v1.0/atom.php
+ */
+data class FeedSpec(val name: String, val url: String, val format: Format = Format.ATOM) {
+    enum class Magnitude(val path: String) {
+        SIGNIFICANT("significant"),
+        M4_5("4.5"),
+        M2_5("2.5"),
+        M1_0("1.0"),
+        ALL("all")
+    }
+
+    enum class Window(val path: String) {
+        HOUR("hour"),
+        DAY("day"),
+        WEEK("week"),
+        MONTH("month")
+    }
+
+    enum class Format(val extension: String) {
+        ATOM(".atom"),
+        GEOJSON(".geojson");
+
+        fun newParser(): EarthquakeFeedParser = when (this) {
+            ATOM -> PullFeedParser()
+            GEOJSON -> GeoJsonFeedParser()
+        }
+    }
+
+    companion object {
+        private const val SUMMARY_URL = "https://earthquake.usgs.gov/earthquakes/feed/v1.0/summary/"
+
+        fun summary(magnitude: Magnitude, window: Window, format: Format = Format.ATOM): FeedSpec {
+            val name = "${magnitude.path}_${window.path}"
+            return FeedSpec(name, "$SUMMARY_URL$name${format.extension}", format)
+        }
+    }
+}
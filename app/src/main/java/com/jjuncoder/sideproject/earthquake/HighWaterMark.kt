@@ -0,0 +1,43 @@
+package com.jjuncoder.sideproject.earthquake
+
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+
+/**
+ * Newest `updated` time seen in a feed, with the ids updated at exactly that time.
+ * Feeds are ordered newest first, so every entry after the first one older than the mark is known as well.
+ */
+data class HighWaterMark(
+    val updatedMillis: Long,
+    val ids: Set<String>
+) {
+    companion object {
+        /**
+         * @return null for no entries.
+         */
+        fun of(earthquakes: Iterable<Earthquake>): HighWaterMark? {
+            var newest = Long.MIN_VALUE
+            val ids = HashSet<String>()
+            for (earthquake in earthquakes) {
+                if (earthquake.updated > newest) {
+                    newest = earthquake.updated
+                    ids.clear()
+                }
+                if (earthquake.updated == newest) ids.add(earthquake.id)
+            }
+            return if (ids.isEmpty()) null else HighWaterMark(newest, ids)
+        }
+    }
+
+    /** The entry and everything after it in the feed is already known, reading can stop. */
+    fun isPassed(earthquake: Earthquake): Boolean = earthquake.updated < updatedMillis
+
+    /** The entry is known, but others updated at the same time may still follow. */
+    fun isKnown(earthquake: Earthquake): Boolean =
+        earthquake.updated < updatedMillis || (earthquake.updated == updatedMillis && earthquake.id in ids)
+
+    operator fun plus(other: HighWaterMark?): HighWaterMark = when {
+        other == null || other.updatedMillis < updatedMillis -> this
+        other.updatedMillis > updatedMillis -> other
+        else -> HighWaterMark(updatedMillis, ids + other.ids)
+    }
+}
@@ -0,0 +1,15 @@
+package com.jjuncoder.sideproject.earthquake
+
+import java.io.IOException
+import java.net.URL
+
+/**
+ * The feed server answered with an unexpected status.
+ */
+class HttpStatusException(val responseCode: Int, url: URL) :
+    IOException("Unexpected response code $responseCode for $url") {
+
+    /** A server error may go away on its own, a client error will not. */
+    val isRetryable: Boolean
+        get() = responseCode >= 500
+}
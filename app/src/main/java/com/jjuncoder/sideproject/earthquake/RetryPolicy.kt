@@ -0,0 +1,50 @@
+package com.jjuncoder.sideproject.earthquake
+
+import kotlinx.coroutines.delay
+import java.io.IOException
+
+/**
+ * Exponential backoff for feed requests. Only I/O failures of the transport and server errors are retried,
+ * a body that does not parse fails with a parser exception that is not an [IOException].
+ * @param maxAttempts total attempts including the first one.
+ */
+data class RetryPolicy(
+    val maxAttempts: Int = 3,
+    val initialDelayMillis: Long = 1_000,
+    val maxDelayMillis: Long = 30_000,
+    val multiplier: Double = 2.0
+) {
+    companion object {
+        val NONE = RetryPolicy(maxAttempts = 1)
+    }
+
+    init {
+        require(maxAttempts >= 1) { "maxAttempts must be at least 1 : $maxAttempts" }
+    }
+
+    /**
+     * @param attempt 0 for the delay before the first retry.
+     */
+    fun delayMillis(attempt: Int): Long {
+        var delay = initialDelayMillis.toDouble()
+        repeat(attempt) { delay *= multiplier }
+        return minOf(delay, maxDelayMillis.toDouble()).toLong()
+    }
+
+    fun shouldRetry(cause: Throwable, attempt: Int): Boolean =
+        attempt + 1 < maxAttempts &&
+            cause is IOException &&
+            (cause !is HttpStatusException || cause.isRetryable)
+
+    suspend fun <T> withRetries(block: suspend () -> T): T {
+        var attempt = 0
+        while (true) {
+            try {
+                return block()
+            } catch (e: IOException) {
+                if (!shouldRetry(e, attempt)) throw e
+                delay(delayMillis(attempt++))
+            }
+        }
+    }
+}
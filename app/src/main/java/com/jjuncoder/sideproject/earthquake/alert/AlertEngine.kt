@@ -0,0 +1,73 @@
+package com.jjuncoder.sideproject.earthquake.alert
+
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import com.jjuncoder.sideproject.earthquake.model.EarthquakeStore
+
+/**
+ * Evaluates the changes of every store merge against [rules] through an [AlertRuleIndex].
+ * A new event alerts every rule it matches, a revision only the rules its previous version did not match,
+ * e.g. when the magnitude was revised upwards, so the same event never alerts the same rule twice in a row.
+ *
+ * Keeps running totals in [stats]. Not thread safe, callers keep it on one thread.
+ */
+class AlertEngine(
+    val rules: AlertRuleIndex = AlertRuleIndex.EMPTY,
+    private val clock: () -> Long = System::nanoTime
+) {
+    data class Alert(
+        val rule: AlertRule,
+        val earthquake: Earthquake
+    )
+
+    /**
+     * @param candidates rules whose region and depth were checked, the naive loop checks `events * rules`.
+     */
+    data class Stats(
+        val events: Long,
+        val candidates: Long,
+        val alerts: Long,
+        val elapsedNanos: Long
+    ) {
+        val eventsPerSecond: Double
+            get() = if (elapsedNanos == 0L) 0.0 else events * 1e9 / elapsedNanos
+
+        val candidatesPerEvent: Double
+            get() = if (events == 0L) 0.0 else candidates.toDouble() / events
+    }
+
+    var stats = Stats(0, 0, 0, 0)
+        private set
+
+    private val matched = ArrayList<AlertRule>()
+    private val previouslyMatched = ArrayList<AlertRule>()
+
+    /**
+     * @return alerts in the order of the change set, inserted events first.
+     */
+    fun evaluate(changes: EarthquakeStore.ChangeSet): List<Alert> {
+        if (rules.size == 0 || (changes.inserted.isEmpty() && changes.updated.isEmpty())) return emptyList()
+        val startNanos = clock()
+        val alerts = ArrayList<Alert>()
+        var candidates = 0L
+        for (earthquake in changes.inserted) {
+            matched.clear()
+            candidates += match(earthquake, matched)
+            matched.forEach { alerts.add(Alert(it, earthquake)) }
+        }
+        for (revision in changes.updated) {
+            matched.clear()
+            candidates += match(revision.current, matched)
+            if (matched.isEmpty()) continue
+            previouslyMatched.clear()
+            candidates += match(revision.previous, previouslyMatched)
+            // both lists are short, a rule list of a cell rarely holds more than a handful of matches
+            matched.forEach { if (it !in previouslyMatched) alerts.add(Alert(it, revision.current)) }
+        }
+        val events = changes.inserted.size + changes.updated.size
+        stats = Stats(stats.events + events, stats.candidates + candidates, stats.alerts + alerts.size, stats.elapsedNanos + clock() - startNanos)
+        return alerts
+    }
+
+    private fun match(earthquake: Earthquake, out: MutableList<AlertRule>): Int =
+        rules.match(earthquake.latitude, earthquake.longitude, earthquake.magnitude, earthquake.depthKm, out)
+}
@@ -0,0 +1,92 @@
+package com.jjuncoder.sideproject.earthquake.alert
+
+import com.jjuncoder.sideproject.earthquake.geo.BoundingBox
+import com.jjuncoder.sideproject.earthquake.geo.GeoMath
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+
+/**
+ * Area an [AlertRule] watches. [bounds] holds every point the region contains,
+ * it is all [AlertRuleIndex] looks at to decide which grid cells a rule belongs to.
+ */
+sealed class AlertRegion {
+    abstract val bounds: BoundingBox
+
+    abstract fun contains(latitude: Double, longitude: Double): Boolean
+
+    /**
+     * Points within [radiusKm] great-circle distance of the center.
+     */
+    data class Circle(
+        val latitude: Double,
+        val longitude: Double,
+        val radiusKm: Double
+    ) : AlertRegion() {
+        init {
+            require(radiusKm >= 0) { "radiusKm : $radiusKm" }
+        }
+
+        override val bounds: BoundingBox = GeoMath.boundingBox(latitude, longitude, radiusKm)
+
+        override fun contains(latitude: Double, longitude: Double): Boolean =
+            bounds.contains(latitude, longitude) && GeoMath.distanceKm(this.latitude, this.longitude, latitude, longitude) <= radiusKm
+    }
+
+    /**
+     * Simple polygon of at least three vertices, edges are straight lines in latitude / longitude.
+     * It must not cross the antimeridian, split such an area into two rules.
+     */
+    class Polygon(
+        private val latitudes: DoubleArray,
+        private val longitudes: DoubleArray
+    ) : AlertRegion() {
+        init {
+            require(latitudes.size == longitudes.size) { "${latitudes.size} latitudes for ${longitudes.size} longitudes" }
+            require(latitudes.size >= 3) { "a polygon needs at least 3 vertices : ${latitudes.size}" }
+        }
+
+        val vertexCount: Int
+            get() = latitudes.size
+
+        override val bounds: BoundingBox = BoundingBox(latitudes.minOrNull()!!, longitudes.minOrNull()!!, latitudes.maxOrNull()!!, longitudes.maxOrNull()!!)
+
+        /**
+         * Even-odd ray casting, a point on an edge may fall on either side.
+         */
+        override fun contains(latitude: Double, longitude: Double): Boolean {
+            if (!bounds.contains(latitude, longitude)) return false
+            var inside = false
+            var j = latitudes.size - 1
+            for (i in latitudes.indices) {
+                if ((latitudes[i] > latitude) != (latitudes[j] > latitude)) {
+                    val crossing = longitudes[i] + (latitude - latitudes[i]) / (latitudes[j] - latitudes[i]) * (longitudes[j] - longitudes[i])
+                    if (longitude < crossing) inside = !inside
+                }
+                j = i
+            }
+            return inside
+        }
+    }
+}
+
+/**
+ * Fires for events inside [region] of at least [minMagnitude] with a depth within [minDepthKm]..[maxDepthKm].
+ * A null bound is not checked. Events without a magnitude or depth never pass a bound on it.
+ */
+data class AlertRule(
+    val id: String,
+    val region: AlertRegion,
+    val minMagnitude: Double? = null,
+    val minDepthKm: Double? = null,
+    val maxDepthKm: Double? = null
+) {
+    fun matchesMagnitude(magnitude: Double): Boolean =
+        minMagnitude == null || magnitude >= minMagnitude
+
+    fun matchesDepth(depthKm: Double): Boolean =
+        (minDepthKm == null || depthKm >= minDepthKm) && (maxDepthKm == null || depthKm <= maxDepthKm)
+
+    fun matches(earthquake: Earthquake): Boolean =
+        matchesMagnitude(earthquake.magnitude) &&
+            matchesDepth(earthquake.depthKm) &&
+            region.contains(earthquake.latitude, earthquake.longitude)
+}
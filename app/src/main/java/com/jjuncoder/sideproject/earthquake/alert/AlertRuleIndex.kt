@@ -0,0 +1,106 @@
+package com.jjuncoder.sideproject.earthquake.alert
+
+import com.jjuncoder.sideproject.earthquake.geo.BoundingBox
+import com.jjuncoder.sideproject.earthquake.geo.GeoMath
+import kotlin.math.floor
+
+/**
+ * [AlertRule]s by grid cell of [cellDegrees] and, inside a cell, by minimum magnitude.
+ * A rule is listed in every cell its region's bounds touch, sorted by threshold, so an event looks at a single cell
+ * and only at the prefix of its rules whose threshold it reaches. The region and depth are checked for those candidates only.
+ *
+ * Immutable once built, events can be matched on any thread.
+ */
+class AlertRuleIndex private constructor(
+    val rules: List<AlertRule>,
+    private val cellDegrees: Double,
+    private val longitudeCells: Int,
+    private val latitudeCells: Int,
+    // per cell, null when no rule covers it
+    private val cellRules: Array<IntArray?>,
+    private val cellThresholds: Array<DoubleArray?>
+) {
+    companion object {
+        /** About 550 km at the equator, a city radius rule lands in one to four cells. */
+        const val DEFAULT_CELL_DEGREES = 5.0
+
+        val EMPTY = build(emptyList())
+
+        fun build(rules: Collection<AlertRule>, cellDegrees: Double = DEFAULT_CELL_DEGREES): AlertRuleIndex {
+            require(cellDegrees > 0) { "cellDegrees : $cellDegrees" }
+            val ruleList = rules.toList()
+            val latitudeCells = Math.ceil(180.0 / cellDegrees).toInt()
+            val longitudeCells = Math.ceil(360.0 / cellDegrees).toInt()
+
+            val members = arrayOfNulls<MutableList<Int>>(latitudeCells * longitudeCells)
+            ruleList.forEachIndexed { index, rule ->
+                forEachCell(rule.region.bounds, cellDegrees, latitudeCells, longitudeCells) { cell ->
+                    (members[cell] ?: ArrayList<Int>().also { members[cell] = it }).add(index)
+                }
+            }
+
+            val cellRules = arrayOfNulls<IntArray>(members.size)
+            val cellThresholds = arrayOfNulls<DoubleArray>(members.size)
+            for (cell in members.indices) {
+                val list = members[cell] ?: continue
+                // stable, so rules of the same threshold keep their registration order
+                list.sortBy { thresholdOf(ruleList[it]) }
+                cellRules[cell] = list.toIntArray()
+                cellThresholds[cell] = DoubleArray(list.size) { thresholdOf(ruleList[list[it]]) }
+            }
+            return AlertRuleIndex(ruleList, cellDegrees, longitudeCells, latitudeCells, cellRules, cellThresholds)
+        }
+
+        private fun thresholdOf(rule: AlertRule): Double = rule.minMagnitude ?: Double.NEGATIVE_INFINITY
+
+        private inline fun forEachCell(box: BoundingBox, cellDegrees: Double, latitudeCells: Int, longitudeCells: Int, action: (Int) -> Unit) {
+            val firstRow = cellIndex(box.south + 90.0, cellDegrees, latitudeCells)
+            val lastRow = cellIndex(box.north + 90.0, cellDegrees, latitudeCells)
+            val firstColumn = cellIndex(box.west + 180.0, cellDegrees, longitudeCells)
+            val lastColumn = cellIndex(box.east + 180.0, cellDegrees, longitudeCells)
+            for (row in firstRow..lastRow) {
+                if (box.crossesAntimeridian) {
+                    for (column in firstColumn until longitudeCells) action(row * longitudeCells + column)
+                    for (column in 0..lastColumn) action(row * longitudeCells + column)
+                } else {
+                    for (column in firstColumn..lastColumn) action(row * longitudeCells + column)
+                }
+            }
+        }
+
+        private fun cellIndex(offsetDegrees: Double, cellDegrees: Double, cells: Int): Int =
+            floor(offsetDegrees / cellDegrees).toInt().coerceIn(0, cells - 1)
+    }
+
+    val size: Int
+        get() = rules.size
+
+    /**
+     * Adds every rule the event matches to [out], in order of minimum magnitude.
+     * @return the number of candidate rules whose region and depth had to be checked.
+     */
+    fun match(latitude: Double, longitude: Double, magnitude: Double, depthKm: Double, out: MutableList<AlertRule>): Int {
+        val cell = cellIndex(latitude + 90.0, cellDegrees, latitudeCells) * longitudeCells +
+            cellIndex(GeoMath.normalizeLongitude(longitude) + 180.0, cellDegrees, longitudeCells)
+        val thresholds = cellThresholds[cell] ?: return 0
+        val ruleIndices = cellRules[cell]!!
+        // an event without a magnitude only reaches the rules without a threshold
+        val candidates = prefixAtMost(thresholds, if (magnitude.isNaN()) Double.NEGATIVE_INFINITY else magnitude)
+        for (i in 0 until candidates) {
+            val rule = rules[ruleIndices[i]]
+            if (rule.matchesDepth(depthKm) && rule.region.contains(latitude, longitude)) out.add(rule)
+        }
+        return candidates
+    }
+
+    /** Length of the prefix of [thresholds], sorted ascending, that are at most [key]. */
+    private fun prefixAtMost(thresholds: DoubleArray, key: Double): Int {
+        var low = 0
+        var high = thresholds.size
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (thresholds[mid] <= key) low = mid + 1 else high = mid
+        }
+        return low
+    }
+}
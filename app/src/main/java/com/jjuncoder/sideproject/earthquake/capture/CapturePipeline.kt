@@ -0,0 +1,217 @@
+package com.jjuncoder.sideproject.earthquake.capture
+
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import androidx.annotation.MainThread
+import androidx.recyclerview.widget.RecyclerView
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import java.io.File
+import java.io.IOException
+
+/**
+ * Captures a list into a file without encoding on the main thread.
+ * The main thread only binds and draws the rows, the pixels are encoded and written through a buffered stream
+ * on [ioDispatcher]. A PNG is streamed tile by tile with at most [TILES_IN_FLIGHT] tiles waiting for the encoder,
+ * JPEG and WebP need the whole image in one bitmap and are only used up to [MAX_BITMAP_BYTES].
+ */
+class CapturePipeline(
+    private val engine: ListCaptureEngine = ListCaptureEngine(),
+    private val ioDispatcher: CoroutineDispatcher = Dispatchers.IO
+) {
+    companion object {
+        const val TILES_IN_FLIGHT = 2
+
+        /** Larger lists are captured as a PNG whatever the requested format. */
+        const val MAX_BITMAP_BYTES = 24L * 1024 * 1024
+
+        /** A list changing this many times in a row is given up on. */
+        private const val MAX_ATTEMPTS = 3
+        private const val BUFFER_SIZE = 64 * 1024
+    }
+
+    enum class Format(val extension: String, val mimeType: String, val maxDimension: Int) {
+        PNG("png", "image/png", Int.MAX_VALUE),
+        JPEG("jpg", "image/jpeg", 65_500),
+        WEBP("webp", "image/webp", 16_383)
+    }
+
+    /**
+     * @param quality 0 to 100, ignored by PNG.
+     */
+    data class Options(val format: Format = Format.PNG, val quality: Int = 90) {
+        init {
+            require(quality in 0..100) { "quality : $quality" }
+        }
+    }
+
+    /**
+     * @param format the format actually written, see [MAX_BITMAP_BYTES].
+     * @param encodeMillis time spent compressing and writing, off the main thread.
+     * @param mainThreadMillis time the main thread was blocked binding and drawing rows.
+     */
+    data class Report(
+        val file: File,
+        val format: Format,
+        val width: Int,
+        val height: Int,
+        val rows: Int,
+        val encodeMillis: Long,
+        val mainThreadMillis: Long,
+        val bytes: Long
+    )
+
+    private class Stopwatch {
+        var nanos = 0L
+
+        inline fun <T> time(block: () -> T): T {
+            val start = System.nanoTime()
+            try {
+                return block()
+            } finally {
+                nanos += System.nanoTime() - start
+            }
+        }
+
+        val millis: Long
+            get() = nanos / 1_000_000
+    }
+
+    /**
+     * Returns once [file] is completely written, a list that changes meanwhile is captured again.
+     * A failed or cancelled capture deletes [file].
+     *
+     * @throws IllegalStateException when the list is empty or did not stop changing.
+     */
+    @MainThread
+    @Throws(IOException::class)
+    suspend fun capture(recyclerView: RecyclerView, file: File, options: Options = Options()): Report {
+        var isComplete = false
+        try {
+            repeat(MAX_ATTEMPTS) {
+                captureOnce(recyclerView, file, options)?.let {
+                    isComplete = true
+                    return it
+                }
+            }
+            throw IllegalStateException("the list kept changing while it was captured")
+        } finally {
+            if (!isComplete) withContext(ioDispatcher + NonCancellable) { file.delete() }
+        }
+    }
+
+    /**
+     * @return null when the adapter changed before every row was drawn.
+     */
+    private suspend fun captureOnce(recyclerView: RecyclerView, file: File, options: Options): Report? {
+        val mainThread = Stopwatch()
+        val encoding = Stopwatch()
+        mainThread.time { engine.measure(recyclerView) }.use { layout ->
+            val bitmapBytes = layout.width.toLong() * layout.height * 4
+            val format = if (options.format != Format.PNG &&
+                (layout.height > options.format.maxDimension || layout.width > options.format.maxDimension || bitmapBytes > MAX_BITMAP_BYTES)
+            ) {
+                Format.PNG
+            } else {
+                options.format
+            }
+
+            val isWritten = if (format == Format.PNG) {
+                streamPng(layout, file, mainThread, encoding)
+            } else {
+                val bitmap = mainThread.time {
+                    Bitmap.createBitmap(layout.width, layout.height, Bitmap.Config.ARGB_8888).also {
+                        layout.draw(Canvas(it), 0, layout.height)
+                    }
+                }
+                try {
+                    compress(bitmap, format, options.quality, file, encoding)
+                } finally {
+                    bitmap.recycle()
+                }
+                true
+            }
+            if (!isWritten) return null
+
+            val bytes = withContext(ioDispatcher) { file.length() }
+            return Report(file, format, layout.width, layout.height, layout.rowCount, encoding.millis, mainThread.millis, bytes)
+        }
+    }
+
+    /**
+     * Draws tile after tile while the encoder deflates the previous ones, the main thread is free whenever it waits.
+     *
+     * @return false when the adapter changed in between.
+     */
+    private suspend fun streamPng(
+        layout: ListCaptureEngine.Layout,
+        file: File,
+        mainThread: Stopwatch,
+        encoding: Stopwatch
+    ): Boolean = coroutineScope {
+        val width = layout.width
+        val free = Channel<IntArray>(TILES_IN_FLIGHT)
+        val drawn = Channel<IntArray>(TILES_IN_FLIGHT)
+        val tileHeight = minOf(engine.tileHeight, layout.height)
+        repeat(TILES_IN_FLIGHT) { free.offer(IntArray(width * tileHeight)) }
+
+        val encoder = launch(ioDispatcher) {
+            file.outputStream().buffered(BUFFER_SIZE).use { output ->
+                // on failure or cancellation closing only releases the deflater, use suppresses its incomplete image error
+                PngStreamWriter(output, width, layout.height).use { png ->
+                    for (tile in 0 until layout.tileCount) {
+                        val pixels = drawn.receive()
+                        encoding.time { png.writeRows(pixels, 0, width, layout.tileRows(tile)) }
+                        free.send(pixels)
+                    }
+                    encoding.time { png.close() }
+                }
+            }
+        }
+
+        val tile = Bitmap.createBitmap(width, tileHeight, Bitmap.Config.ARGB_8888)
+        try {
+            val canvas = Canvas(tile)
+            for (index in 0 until layout.tileCount) {
+                // suspends while the encoder is TILES_IN_FLIGHT tiles behind
+                val pixels = free.receive()
+                if (layout.isStale) {
+                    encoder.cancel()
+                    return@coroutineScope false
+                }
+                mainThread.time {
+                    val top = layout.tileTop(index)
+                    val rows = layout.tileRows(index)
+                    layout.draw(canvas, top, top + rows)
+                    tile.getPixels(pixels, 0, width, 0, 0, width, rows)
+                }
+                drawn.send(pixels)
+            }
+        } finally {
+            tile.recycle()
+        }
+        encoder.join()
+        true
+    }
+
+    @Suppress("DEPRECATION")
+    private suspend fun compress(bitmap: Bitmap, format: Format, quality: Int, file: File, encoding: Stopwatch) {
+        val compressFormat = when (format) {
+            Format.JPEG -> Bitmap.CompressFormat.JPEG
+            // WEBP_LOSSY needs API 30
+            Format.WEBP -> Bitmap.CompressFormat.WEBP
+            Format.PNG -> Bitmap.CompressFormat.PNG
+        }
+        withContext(ioDispatcher) {
+            file.outputStream().buffered(BUFFER_SIZE).use { output ->
+                val isCompressed = encoding.time { bitmap.compress(compressFormat, quality, output) }
+                if (!isCompressed) throw IOException("failed to encode $format")
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.jjuncoder.sideproject.earthquake.capture
+
+import android.graphics.Canvas
+import android.graphics.Color
+import android.util.SparseArray
+import android.view.View
+import androidx.annotation.MainThread
+import androidx.recyclerview.widget.RecyclerView
+import java.io.Closeable
+import java.util.*
+
+/**
+ * Draws every row of a [RecyclerView]'s adapter, not only the attached ones, so the whole list can be captured.
+ * Rows are bound to a detached view holder, one per view type, and drawn band by band into a canvas of any height,
+ * e.g. a reused tile of [tileHeight] pixels. Peak memory is that canvas and one row offset per position,
+ * so a list of thousands of rows captures as safely as a single screen.
+ *
+ * Item decorations and animations of the list are not drawn.
+ */
+class ListCaptureEngine(
+    val tileHeight: Int = DEFAULT_TILE_HEIGHT,
+    private val backgroundColor: Int = Color.WHITE
+) {
+    companion object {
+        /** About 2 MB per tile on a 1080 px wide screen. */
+        const val DEFAULT_TILE_HEIGHT = 512
+    }
+
+    init {
+        require(tileHeight > 0) { "tileHeight : $tileHeight" }
+    }
+
+    /**
+     * Binds and measures every row once, the image height has to be known before the first pixel is encoded.
+     *
+     * @throws IllegalStateException when the list is empty or not laid out yet.
+     */
+    @MainThread
+    fun measure(recyclerView: RecyclerView): Layout {
+        @Suppress("UNCHECKED_CAST")
+        val adapter = recyclerView.adapter as RecyclerView.Adapter<RecyclerView.ViewHolder>? ?: throw IllegalStateException("no adapter")
+        val rowWidth = recyclerView.width - recyclerView.paddingLeft - recyclerView.paddingRight
+        check(rowWidth > 0) { "not laid out yet" }
+        val count = adapter.itemCount
+        check(count > 0) { "nothing to capture" }
+
+        val rows = RowRenderer(recyclerView, adapter, rowWidth)
+        val tops = IntArray(count + 1)
+        var height = 0L
+        for (position in 0 until count) {
+            tops[position] = height.toInt()
+            height += rows.bind(position).measuredHeight
+            check(height <= Int.MAX_VALUE) { "list height : $height" }
+        }
+        tops[count] = height.toInt()
+        check(height > 0) { "nothing to capture" }
+        return Layout(recyclerView, adapter, rows, tops)
+    }
+
+    /**
+     * Row offsets of one state of the adapter. Any change the adapter notifies afterwards makes it [isStale],
+     * close it once the capture is done.
+     */
+    inner class Layout internal constructor(
+        private val recyclerView: RecyclerView,
+        private val adapter: RecyclerView.Adapter<RecyclerView.ViewHolder>,
+        private val rows: RowRenderer,
+        // top of each row, then the bottom of the last one
+        private val tops: IntArray
+    ) : Closeable {
+        val width: Int = recyclerView.width
+        val height: Int = tops.last()
+        val rowCount: Int = tops.size - 1
+        val tileCount: Int = ((height.toLong() + tileHeight - 1) / tileHeight).toInt()
+
+        @Volatile
+        var isStale = false
+            private set
+
+        private val observer = object : RecyclerView.AdapterDataObserver() {
+            override fun onChanged() {
+                isStale = true
+            }
+
+            override fun onItemRangeChanged(positionStart: Int, itemCount: Int) {
+                isStale = true
+            }
+
+            override fun onItemRangeChanged(positionStart: Int, itemCount: Int, payload: Any?) {
+                isStale = true
+            }
+
+            override fun onItemRangeInserted(positionStart: Int, itemCount: Int) {
+                isStale = true
+            }
+
+            override fun onItemRangeRemoved(positionStart: Int, itemCount: Int) {
+                isStale = true
+            }
+
+            override fun onItemRangeMoved(fromPosition: Int, toPosition: Int, itemCount: Int) {
+                isStale = true
+            }
+        }
+
+        init {
+            adapter.registerAdapterDataObserver(observer)
+        }
+
+        fun tileTop(tile: Int): Int = tile * tileHeight
+
+        fun tileRows(tile: Int): Int = minOf(tileHeight, height - tileTop(tile))
+
+        /**
+         * Draws the band `[top, bottom)` of the list with its top at the origin of [canvas].
+         * A row crossing the band's edges is drawn whole, the canvas clips it.
+         */
+        @MainThread
+        fun draw(canvas: Canvas, top: Int, bottom: Int) {
+            check(!isStale) { "the adapter changed" }
+            canvas.drawColor(backgroundColor)
+            val found = Arrays.binarySearch(tops, 0, rowCount, top)
+            var position = if (found >= 0) found else -found - 2
+            while (position < rowCount && tops[position] < bottom) {
+                val view = rows.bind(position)
+                canvas.save()
+                canvas.translate(recyclerView.paddingLeft.toFloat(), (tops[position] - top).toFloat())
+                view.draw(canvas)
+                canvas.restore()
+                position++
+            }
+        }
+
+        override fun close() {
+            adapter.unregisterAdapterDataObserver(observer)
+        }
+    }
+
+    /**
+     * Detached holders, they never take part in the list's own recycling.
+     */
+    internal class RowRenderer(
+        private val parent: RecyclerView,
+        private val adapter: RecyclerView.Adapter<RecyclerView.ViewHolder>,
+        rowWidth: Int
+    ) {
+        private val holders = SparseArray<RecyclerView.ViewHolder>()
+        private val widthSpec = View.MeasureSpec.makeMeasureSpec(rowWidth, View.MeasureSpec.EXACTLY)
+        private val heightSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED)
+
+        fun bind(position: Int): View {
+            val viewType = adapter.getItemViewType(position)
+            val holder = holders.get(viewType) ?: adapter.createViewHolder(parent, viewType).also { holders.put(viewType, it) }
+            adapter.bindViewHolder(holder, position)
+            return holder.itemView.apply {
+                measure(widthSpec, heightSpec)
+                layout(0, 0, measuredWidth, measuredHeight)
+            }
+        }
+    }
+}
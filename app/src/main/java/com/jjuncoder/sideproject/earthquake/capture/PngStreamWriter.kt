@@ -0,0 +1,131 @@
+package com.jjuncoder.sideproject.earthquake.capture
+
+import java.io.Closeable
+import java.io.DataOutputStream
+import java.io.IOException
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.util.zip.CRC32
+import java.util.zip.Deflater
+
+/**
+ * Encodes an opaque 8-bit RGB PNG row by row, so an image taller than any bitmap that fits in memory
+ * can be written in slices. Memory is two scanlines plus the deflate buffers, whatever the height.
+ * Every scanline uses the "Up" filter, flat list rows then compress to almost nothing.
+ */
+class PngStreamWriter(
+    output: OutputStream,
+    val width: Int,
+    val height: Int,
+    compressionLevel: Int = Deflater.DEFAULT_COMPRESSION
+) : Closeable {
+    companion object {
+        private val SIGNATURE = byteArrayOf(0x89.toByte(), 'P'.toByte(), 'N'.toByte(), 'G'.toByte(), 0x0D, 0x0A, 0x1A, 0x0A)
+        private const val COLOR_TYPE_RGB = 2
+        private const val FILTER_UP = 2
+        private const val BYTES_PER_PIXEL = 3
+        private const val IDAT_SIZE = 64 * 1024
+    }
+
+    private val output = DataOutputStream(output)
+    private val deflater = Deflater(compressionLevel)
+    private var scanline = ByteArray(1 + width * BYTES_PER_PIXEL)
+    private var previous = ByteArray(scanline.size)
+    private val filtered = ByteArray(scanline.size)
+    private val compressed = ByteArray(IDAT_SIZE)
+    private var compressedSize = 0
+    private var rowsWritten = 0
+    private var closed = false
+
+    init {
+        require(width > 0 && height > 0) { "empty image : $width x $height" }
+        this.output.write(SIGNATURE)
+        writeChunk("IHDR", ByteBuffer.allocate(13)
+            .putInt(width)
+            .putInt(height)
+            .put(8) // bits per channel
+            .put(COLOR_TYPE_RGB.toByte())
+            .put(0) // deflate
+            .put(0) // adaptive filtering
+            .put(0) // no interlace
+            .array(), 13)
+    }
+
+    val isComplete: Boolean
+        get() = rowsWritten == height
+
+    /**
+     * @param pixels ARGB pixels as returned by `Bitmap.getPixels`, alpha is ignored.
+     * @param stride pixels from one row to the next in [pixels].
+     */
+    @Throws(IOException::class)
+    fun writeRows(pixels: IntArray, offset: Int, stride: Int, rows: Int) {
+        check(!closed) { "already closed" }
+        require(rowsWritten + rows <= height) { "${rowsWritten + rows} rows for an image of $height" }
+        for (row in 0 until rows) {
+            var index = offset + row * stride
+            var position = 1
+            for (x in 0 until width) {
+                val pixel = pixels[index++]
+                scanline[position++] = (pixel shr 16).toByte()
+                scanline[position++] = (pixel shr 8).toByte()
+                scanline[position++] = pixel.toByte()
+            }
+            // Up : each byte minus the one above it, the first row is compared against zeros
+            filtered[0] = FILTER_UP.toByte()
+            for (i in 1 until scanline.size) {
+                filtered[i] = (scanline[i] - previous[i]).toByte()
+            }
+            deflater.setInput(filtered)
+            while (!deflater.needsInput()) drain()
+
+            val swap = previous
+            previous = scanline
+            scanline = swap
+            rowsWritten++
+        }
+    }
+
+    @Throws(IOException::class)
+    override fun close() {
+        if (closed) return
+        closed = true
+        try {
+            if (isComplete) {
+                deflater.finish()
+                while (!deflater.finished()) drain()
+                flushData()
+                writeChunk("IEND", ByteArray(0), 0)
+            }
+            output.flush()
+        } finally {
+            deflater.end()
+            output.close()
+        }
+        // checked last so the stream is released either way
+        check(isComplete) { "only $rowsWritten of $height rows were written" }
+    }
+
+    private fun drain() {
+        val count = deflater.deflate(compressed, compressedSize, compressed.size - compressedSize)
+        compressedSize += count
+        if (compressedSize == compressed.size) flushData()
+    }
+
+    private fun flushData() {
+        if (compressedSize == 0) return
+        writeChunk("IDAT", compressed, compressedSize)
+        compressedSize = 0
+    }
+
+    private fun writeChunk(type: String, data: ByteArray, length: Int) {
+        val typeBytes = type.toByteArray(Charsets.US_ASCII)
+        val crc = CRC32()
+        crc.update(typeBytes)
+        crc.update(data, 0, length)
+        output.writeInt(length)
+        output.write(typeBytes)
+        output.write(data, 0, length)
+        output.writeInt(crc.value.toInt())
+    }
+}
@@ -0,0 +1,42 @@
+package com.jjuncoder.sideproject.earthquake.db
+
+import androidx.annotation.WorkerThread
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import kotlinx.coroutines.flow.Flow
+
+@Dao
+interface EarthquakeDao {
+    /**
+     * Inserts or replaces every row by [EarthquakeEntity.id] inside a single transaction.
+     */
+    @WorkerThread
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    fun upsertAll(earthquakes: List<EarthquakeEntity>)
+
+    @Query("SELECT * FROM earthquake ORDER BY updated DESC")
+    fun observeAll(): Flow<List<EarthquakeEntity>>
+
+    /**
+     * Only the rows inserted or replaced after the one of [seq], by any writer, instead of the whole table on every write.
+     */
+    @Query("SELECT * FROM earthquake WHERE seq > :seq ORDER BY updated DESC")
+    fun observeWrittenAfter(seq: Long): Flow<List<EarthquakeEntity>>
+
+    /**
+     * e.g. "M≥4.5 in last 24h" : findRecent(4.5, now - 24h)
+     */
+    @Query("SELECT * FROM earthquake WHERE updated >= :since AND magnitude >= :minMagnitude ORDER BY updated DESC")
+    suspend fun findRecent(minMagnitude: Double, since: Long): List<EarthquakeEntity>
+
+    /**
+     * SQLite binds at most 999 variables, callers split larger lists.
+     */
+    @Query("DELETE FROM earthquake WHERE id IN (:ids)")
+    suspend fun deleteAll(ids: List<String>)
+
+    @Query("SELECT COUNT(*) FROM earthquake")
+    suspend fun count(): Int
+}
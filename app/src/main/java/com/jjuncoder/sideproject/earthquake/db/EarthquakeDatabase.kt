@@ -0,0 +1,27 @@
+package com.jjuncoder.sideproject.earthquake.db
+
+import android.content.Context
+import androidx.room.Database
+import androidx.room.Room
+import androidx.room.RoomDatabase
+
+@Database(entities = [EarthquakeEntity::class], version = 4, exportSchema = false)
+abstract class EarthquakeDatabase : RoomDatabase() {
+    abstract fun earthquakeDao(): EarthquakeDao
+
+    companion object {
+        private const val DATABASE_NAME = "earthquake.db"
+
+        @Volatile
+        private var instance: EarthquakeDatabase? = null
+
+        fun getInstance(context: Context): EarthquakeDatabase =
+            instance ?: synchronized(this) {
+                instance ?: Room.databaseBuilder(context.applicationContext, EarthquakeDatabase::class.java, DATABASE_NAME)
+                    // the store only mirrors the USGS feeds, so a schema change simply drops it and the next refresh fills it again
+                    .fallbackToDestructiveMigration()
+                    .build()
+                    .also { instance = it }
+            }
+    }
+}
@@ -0,0 +1,44 @@
+package com.jjuncoder.sideproject.earthquake.db
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+
+/**
+ * Row of the local earthquake store. [id] is unique, an upsert replaces the row of the same id,
+ * [updated] and [magnitude] are indexed for the time / magnitude range queries.
+ * [depthKm] is null when unknown, SQLite would store a NaN as NULL anyway.
+ * [seq] is the AUTOINCREMENT primary key, every insert or replace gets a larger one than any row written before,
+ * also a deleted one, so observers can read only the rows written since.
+ */
+@Entity(
+    tableName = "earthquake",
+    indices = [Index(value = ["id"], unique = true), Index(value = ["updated"]), Index(value = ["magnitude"])]
+)
+data class EarthquakeEntity(
+    val id: String,
+    val updated: Long,
+    val details: String,
+    val latitude: Double,
+    val longitude: Double,
+    val magnitude: Double,
+    val depthKm: Double?,
+    @PrimaryKey(autoGenerate = true) val seq: Long = 0
+) {
+    fun toEarthquake(): Earthquake =
+        Earthquake(id, updated, details, latitude, longitude, magnitude, depthKm ?: Double.NaN)
+
+    companion object {
+        fun from(earthquake: Earthquake): EarthquakeEntity =
+            EarthquakeEntity(
+                earthquake.id,
+                earthquake.updated,
+                earthquake.details,
+                earthquake.latitude,
+                earthquake.longitude,
+                earthquake.magnitude,
+                earthquake.depthKm.takeUnless { it.isNaN() }
+            )
+    }
+}
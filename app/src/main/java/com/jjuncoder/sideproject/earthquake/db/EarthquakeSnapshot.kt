@@ -0,0 +1,217 @@
+package com.jjuncoder.sideproject.earthquake.db
+
+import android.util.Log
+import androidx.annotation.WorkerThread
+import com.jjuncoder.sideproject.earthquake.model.EarthquakeDataset
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.BufferUnderflowException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.*
+import java.util.zip.CRC32
+
+/**
+ * Last known list in one binary file, so a cold start can show it before Room is even opened.
+ * It is read through a memory mapped buffer, columns are copied out with bulk gets.
+ *
+ * Layout, big endian:
+ * ```
+ * header   magic "EQSN", major u16, minor u16, header size i32, row count i32, crc32 of the rest i32, written at i64
+ * sections count i32, then per section tag i32, offset i32, length i32
+ * ```
+ * followed by the sections. A newer minor version may grow the header or add sections, both are skipped,
+ * a newer major version is not read at all. A missing, truncated or corrupt file reads as null and is deleted.
+ */
+class EarthquakeSnapshot(private val file: File) {
+    companion object {
+        private const val TAG = "EarthquakeSnapshot"
+        private const val MAGIC = 0x4551534E // "EQSN"
+        private const val MAJOR_VERSION = 1
+        // 1 added the depths, read as unknown from older files
+        private const val MINOR_VERSION = 1
+        private const val HEADER_SIZE = 28
+
+        private const val SECTION_IDS = 1
+        private const val SECTION_UPDATED = 2
+        private const val SECTION_DETAILS_TABLE = 3
+        private const val SECTION_DETAILS = 4
+        private const val SECTION_LATITUDES = 5
+        private const val SECTION_LONGITUDES = 6
+        private const val SECTION_MAGNITUDES = 7
+        private const val SECTION_DEPTHS = 8
+
+        private const val CRC_CHUNK_SIZE = 64 * 1024
+    }
+
+    private class Section(val tag: Int, val bytes: ByteArray)
+
+    @WorkerThread
+    @Throws(IOException::class)
+    fun write(dataset: EarthquakeDataset, writtenMillis: Long = System.currentTimeMillis()) {
+        val size = dataset.size
+        val detailsIndex = HashMap<String, Int>()
+        val detailsTable = ArrayList<String>()
+        val detailsColumn = IntArray(size) { row ->
+            detailsIndex.getOrPut(dataset.details(row)) { detailsTable.add(dataset.details(row)); detailsTable.size - 1 }
+        }
+        val sections = listOf(
+            Section(SECTION_IDS, encodeStrings(List(size) { dataset.id(it) })),
+            Section(SECTION_UPDATED, ByteBuffer.allocate(size * 8).apply { asLongBuffer().put(LongArray(size) { dataset.updated(it) }) }.array()),
+            Section(SECTION_DETAILS_TABLE, encodeStrings(detailsTable)),
+            Section(SECTION_DETAILS, ByteBuffer.allocate(size * 4).apply { asIntBuffer().put(detailsColumn) }.array()),
+            Section(SECTION_LATITUDES, encodeDoubles(size) { dataset.latitude(it) }),
+            Section(SECTION_LONGITUDES, encodeDoubles(size) { dataset.longitude(it) }),
+            Section(SECTION_MAGNITUDES, encodeDoubles(size) { dataset.magnitude(it) }),
+            Section(SECTION_DEPTHS, encodeDoubles(size) { dataset.depthKm(it) })
+        )
+
+        val tableSize = 4 + sections.size * 12
+        val buffer = ByteBuffer.allocate(HEADER_SIZE + tableSize + sections.sumBy { it.bytes.size })
+        buffer.position(HEADER_SIZE)
+        buffer.putInt(sections.size)
+        var offset = HEADER_SIZE + tableSize
+        for (section in sections) {
+            buffer.putInt(section.tag).putInt(offset).putInt(section.bytes.size)
+            offset += section.bytes.size
+        }
+        sections.forEach { buffer.put(it.bytes) }
+
+        val crc = CRC32().apply { update(buffer.array(), HEADER_SIZE, buffer.capacity() - HEADER_SIZE) }
+        buffer.position(0)
+        buffer.putInt(MAGIC)
+            .putShort(MAJOR_VERSION.toShort())
+            .putShort(MINOR_VERSION.toShort())
+            .putInt(HEADER_SIZE)
+            .putInt(size)
+            .putInt(crc.value.toInt())
+            .putLong(writtenMillis)
+
+        // a crash while writing leaves the previous snapshot in place
+        val tempFile = File(file.parentFile, file.name + ".tmp")
+        FileOutputStream(tempFile).use {
+            it.write(buffer.array())
+            it.fd.sync()
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete()
+            throw IOException("Can't replace $file")
+        }
+    }
+
+    /**
+     * @return null when there is no snapshot or it can't be read.
+     */
+    @WorkerThread
+    fun read(): EarthquakeDataset? {
+        if (!file.exists()) return null
+        return try {
+            RandomAccessFile(file, "r").use { input ->
+                decode(input.channel.map(FileChannel.MapMode.READ_ONLY, 0, input.length()))
+            }
+        } catch (e: IOException) {
+            Log.w(TAG, "unreadable snapshot $file", e)
+            null
+        } catch (e: RuntimeException) {
+            // BufferUnderflowException, IndexOutOfBoundsException, IllegalArgumentException of a damaged file
+            Log.w(TAG, "corrupt snapshot $file", e)
+            file.delete()
+            null
+        }
+    }
+
+    private fun decode(buffer: ByteBuffer): EarthquakeDataset? {
+        if (buffer.getInt() != MAGIC) throw IllegalArgumentException("not a snapshot")
+        val majorVersion = buffer.getShort().toInt()
+        buffer.getShort() // minor, anything newer only adds what is skipped below
+        if (majorVersion != MAJOR_VERSION) {
+            Log.i(TAG, "snapshot version $majorVersion is not supported")
+            return null
+        }
+        val headerSize = buffer.getInt()
+        val size = buffer.getInt()
+        val crc = buffer.getInt()
+        // the header is not covered by the checksum, so the row count is checked against the file size
+        if (headerSize < HEADER_SIZE || headerSize > buffer.capacity() || size < 0 || size.toLong() * 8 > buffer.capacity()) {
+            throw IllegalArgumentException("bad header")
+        }
+        if (crcOf(buffer, headerSize) != crc) throw IllegalArgumentException("checksum mismatch")
+
+        buffer.position(headerSize)
+        val sections = HashMap<Int, ByteBuffer>()
+        repeat(buffer.getInt()) {
+            val tag = buffer.getInt()
+            val offset = buffer.getInt()
+            val length = buffer.getInt()
+            sections[tag] = slice(buffer, offset, length)
+        }
+        fun section(tag: Int) = sections[tag] ?: throw IllegalArgumentException("missing section $tag")
+
+        val ids = decodeStrings(section(SECTION_IDS), size)
+        val updated = LongArray(size).also { section(SECTION_UPDATED).asLongBuffer().get(it) }
+        val detailsTable = section(SECTION_DETAILS_TABLE).let { decodeStrings(it, it.getInt(0)) }
+        val detailsColumn = IntArray(size).also { section(SECTION_DETAILS).asIntBuffer().get(it) }
+        val details = Array(size) { detailsTable[detailsColumn[it]] }
+        val latitudes = DoubleArray(size).also { section(SECTION_LATITUDES).asDoubleBuffer().get(it) }
+        val longitudes = DoubleArray(size).also { section(SECTION_LONGITUDES).asDoubleBuffer().get(it) }
+        val magnitudes = DoubleArray(size).also { section(SECTION_MAGNITUDES).asDoubleBuffer().get(it) }
+        val depths = DoubleArray(size)
+        // not in files written before minor version 1
+        val depthsSection = sections[SECTION_DEPTHS]
+        if (depthsSection != null) depthsSection.asDoubleBuffer().get(depths) else depths.fill(Double.NaN)
+        return EarthquakeDataset.wrap(ids, updated, details, latitudes, longitudes, magnitudes, depths)
+    }
+
+    private fun crcOf(buffer: ByteBuffer, start: Int): Int {
+        val crc = CRC32()
+        val chunk = ByteArray(CRC_CHUNK_SIZE)
+        val view = buffer.duplicate()
+        view.position(start)
+        while (view.hasRemaining()) {
+            val length = minOf(chunk.size, view.remaining())
+            view.get(chunk, 0, length)
+            crc.update(chunk, 0, length)
+        }
+        return crc.value.toInt()
+    }
+
+    private fun slice(buffer: ByteBuffer, offset: Int, length: Int): ByteBuffer {
+        if (offset < 0 || length < 0 || offset.toLong() + length > buffer.capacity()) throw BufferUnderflowException()
+        val view = buffer.duplicate()
+        view.position(offset)
+        view.limit(offset + length)
+        return view.slice()
+    }
+
+    /** Count i32, then per string its UTF-8 length i32 and bytes. */
+    private fun encodeStrings(strings: List<String>): ByteArray {
+        val encoded = strings.map { it.toByteArray(Charsets.UTF_8) }
+        val buffer = ByteBuffer.allocate(4 + encoded.sumBy { 4 + it.size })
+        buffer.putInt(strings.size)
+        encoded.forEach { buffer.putInt(it.size).put(it) }
+        return buffer.array()
+    }
+
+    private fun decodeStrings(buffer: ByteBuffer, expectedCount: Int): Array<String> {
+        val count = buffer.getInt()
+        if (count < 0 || count > buffer.remaining() / 4) throw BufferUnderflowException()
+        if (count != expectedCount) throw IllegalArgumentException("expected $expectedCount strings, found $count")
+        var bytes = ByteArray(64)
+        return Array(count) {
+            val length = buffer.getInt()
+            if (length < 0 || length > buffer.remaining()) throw BufferUnderflowException()
+            if (length > bytes.size) bytes = ByteArray(maxOf(length, bytes.size * 2))
+            buffer.get(bytes, 0, length)
+            String(bytes, 0, length, Charsets.UTF_8)
+        }
+    }
+
+    private inline fun encodeDoubles(size: Int, value: (Int) -> Double): ByteArray {
+        val buffer = ByteBuffer.allocate(size * 8)
+        val doubles = buffer.asDoubleBuffer()
+        for (row in 0 until size) doubles.put(value(row))
+        return buffer.array()
+    }
+}
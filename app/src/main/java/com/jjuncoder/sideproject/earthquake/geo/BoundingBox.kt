@@ -0,0 +1,28 @@
+package com.jjuncoder.sideproject.earthquake.geo
+
+/**
+ * Latitude / longitude rectangle, e.g. the visible part of a map.
+ * [west] is greater than [east] when the box crosses the antimeridian.
+ */
+data class BoundingBox(
+    val south: Double,
+    val west: Double,
+    val north: Double,
+    val east: Double
+) {
+    init {
+        require(south <= north) { "south $south is above north $north" }
+    }
+
+    val crossesAntimeridian: Boolean
+        get() = west > east
+
+    fun contains(latitude: Double, longitude: Double): Boolean {
+        if (latitude < south || latitude > north) return false
+        return if (crossesAntimeridian) {
+            longitude >= west || longitude <= east
+        } else {
+            longitude in west..east
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.jjuncoder.sideproject.earthquake.geo
+
+import androidx.annotation.WorkerThread
+import com.jjuncoder.sideproject.earthquake.model.EarthquakeDataset
+
+/**
+ * Events of a dataset aggregated into the cells of a [columns] x [rows] grid over an equirectangular world map,
+ * one cluster per occupied cell. Positions are world coordinates, x from 0 at 180°W to 1 at 180°E
+ * and y from 0 at the north pole to 1 at the south pole, so the grid only depends on the zoom level, never on panning.
+ */
+class EarthquakeClusters private constructor(
+    val columns: Int,
+    val rows: Int,
+    val size: Int,
+    private val xs: FloatArray,
+    private val ys: FloatArray,
+    private val counts: IntArray,
+    private val maxMagnitudes: FloatArray
+) {
+    companion object {
+        val EMPTY = EarthquakeClusters(1, 1, 0, FloatArray(0), FloatArray(0), IntArray(0), FloatArray(0))
+
+        fun worldX(longitude: Double): Double = (GeoMath.normalizeLongitude(longitude) + 180.0) / 360.0
+
+        fun worldY(latitude: Double): Double = (90.0 - latitude.coerceIn(-90.0, 90.0)) / 180.0
+
+        /**
+         * @param columns cells across the world, the grid has half as many rows so cells are square on the map.
+         */
+        @WorkerThread
+        fun cluster(dataset: EarthquakeDataset, columns: Int): EarthquakeClusters {
+            require(columns >= 2) { "columns : $columns" }
+            val rows = columns / 2
+            require(columns.toLong() * rows <= Int.MAX_VALUE) { "too many cells : $columns x $rows" }
+
+            // cell in the high half, row in the low one, a primitive sort groups the events of each cell
+            val keys = LongArray(dataset.size)
+            val latitudes = dataset.latitudeColumn
+            val longitudes = dataset.longitudeColumn
+            for (i in 0 until dataset.size) {
+                val column = (worldX(longitudes[i]) * columns).toInt().coerceIn(0, columns - 1)
+                val row = (worldY(latitudes[i]) * rows).toInt().coerceIn(0, rows - 1)
+                keys[i] = ((row.toLong() * columns + column) shl 32) or i.toLong()
+            }
+            keys.sort()
+
+            val xs = FloatArray(dataset.size)
+            val ys = FloatArray(dataset.size)
+            val counts = IntArray(dataset.size)
+            val maxMagnitudes = FloatArray(dataset.size)
+            var size = 0
+            var start = 0
+            while (start < keys.size) {
+                val cell = keys[start] ushr 32
+                var end = start
+                var sumX = 0.0
+                var sumY = 0.0
+                var maxMagnitude = Float.NaN
+                while (end < keys.size && keys[end] ushr 32 == cell) {
+                    val index = keys[end].toInt()
+                    sumX += worldX(longitudes[index])
+                    sumY += worldY(latitudes[index])
+                    val magnitude = dataset.magnitude(index).toFloat()
+                    // NaN, an event without magnitude, never wins a comparison
+                    if (maxMagnitude.isNaN() || magnitude > maxMagnitude) maxMagnitude = magnitude
+                    end++
+                }
+                val count = end - start
+                xs[size] = (sumX / count).toFloat()
+                ys[size] = (sumY / count).toFloat()
+                counts[size] = count
+                maxMagnitudes[size] = maxMagnitude
+                size++
+                start = end
+            }
+            return EarthquakeClusters(columns, rows, size, xs, ys, counts, maxMagnitudes)
+        }
+    }
+
+    /** World x of the mean position of the cluster's events. */
+    fun x(index: Int): Float = xs[index]
+
+    /** World y of the mean position of the cluster's events. */
+    fun y(index: Int): Float = ys[index]
+
+    fun count(index: Int): Int = counts[index]
+
+    /** NaN when no event of the cluster has a magnitude. */
+    fun maxMagnitude(index: Int): Float = maxMagnitudes[index]
+}
@@ -0,0 +1,162 @@
+package com.jjuncoder.sideproject.earthquake.geo
+
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import kotlin.math.floor
+
+/**
+ * Spatial index over earthquake locations: a fixed latitude / longitude grid of [cellDegrees] cells.
+ * A query only looks at the cells its bounding box touches instead of every event,
+ * so "within N km" and viewport queries cost about the number of events nearby.
+ *
+ * Events are added one by one as they arrive, an event with a known id replaces the previous version.
+ * Not thread safe, callers keep it on one thread.
+ */
+class EarthquakeGridIndex(private val cellDegrees: Double = DEFAULT_CELL_DEGREES) {
+    companion object {
+        /** About 110 km at the equator, a few dozen events per cell for the "all_month" feed. */
+        const val DEFAULT_CELL_DEGREES = 1.0
+    }
+
+    /**
+     * Events of one cell, coordinates in primitive arrays so the distance filter doesn't touch the rows.
+     */
+    private class Cell {
+        var size = 0
+        var latitudes = DoubleArray(4)
+        var longitudes = DoubleArray(4)
+        var earthquakes = arrayOfNulls<Earthquake>(4)
+
+        fun add(earthquake: Earthquake) {
+            if (size == earthquakes.size) {
+                val capacity = size * 2
+                latitudes = latitudes.copyOf(capacity)
+                longitudes = longitudes.copyOf(capacity)
+                earthquakes = earthquakes.copyOf(capacity)
+            }
+            latitudes[size] = earthquake.latitude
+            longitudes[size] = earthquake.longitude
+            earthquakes[size] = earthquake
+            size++
+        }
+
+        fun remove(id: String) {
+            for (i in 0 until size) {
+                if (earthquakes[i]!!.id == id) {
+                    val last = --size
+                    latitudes[i] = latitudes[last]
+                    longitudes[i] = longitudes[last]
+                    earthquakes[i] = earthquakes[last]
+                    earthquakes[last] = null
+                    return
+                }
+            }
+        }
+    }
+
+    private val latitudeCells = Math.ceil(180.0 / cellDegrees).toInt()
+    private val longitudeCells = Math.ceil(360.0 / cellDegrees).toInt()
+    private val cells = HashMap<Int, Cell>()
+    private val cellOfId = HashMap<String, Int>()
+
+    val size: Int
+        get() = cellOfId.size
+
+    /**
+     * Adds [earthquake], replacing the event with the same id.
+     */
+    fun add(earthquake: Earthquake) {
+        val key = cellKey(earthquake.latitude, earthquake.longitude)
+        cellOfId.put(earthquake.id, key)?.let { previousKey -> removeFromCell(previousKey, earthquake.id) }
+        cells.getOrPut(key) { Cell() }.add(earthquake)
+    }
+
+    fun addAll(earthquakes: Iterable<Earthquake>) {
+        earthquakes.forEach { add(it) }
+    }
+
+    fun remove(id: String): Boolean {
+        val key = cellOfId.remove(id) ?: return false
+        removeFromCell(key, id)
+        return true
+    }
+
+    private fun removeFromCell(key: Int, id: String) {
+        val cell = cells[key] ?: return
+        cell.remove(id)
+        if (cell.size == 0) cells.remove(key)
+    }
+
+    fun clear() {
+        cells.clear()
+        cellOfId.clear()
+    }
+
+    /**
+     * Events within [radiusKm] great-circle distance of the point, in no particular order.
+     */
+    fun withinRadius(
+        latitude: Double,
+        longitude: Double,
+        radiusKm: Double,
+        out: MutableList<Earthquake> = ArrayList()
+    ): MutableList<Earthquake> {
+        forEachCandidate(GeoMath.boundingBox(latitude, longitude, radiusKm)) { cell, i ->
+            if (GeoMath.distanceKm(latitude, longitude, cell.latitudes[i], cell.longitudes[i]) <= radiusKm) {
+                out.add(cell.earthquakes[i]!!)
+            }
+        }
+        return out
+    }
+
+    /**
+     * Events inside [box], in no particular order.
+     */
+    fun inBoundingBox(box: BoundingBox, out: MutableList<Earthquake> = ArrayList()): MutableList<Earthquake> {
+        forEachCandidate(box) { cell, i ->
+            if (box.contains(cell.latitudes[i], cell.longitudes[i])) {
+                out.add(cell.earthquakes[i]!!)
+            }
+        }
+        return out
+    }
+
+    private inline fun forEachCandidate(box: BoundingBox, action: (Cell, Int) -> Unit) {
+        val firstRow = latitudeIndex(box.south)
+        val lastRow = latitudeIndex(box.north)
+        if (box.crossesAntimeridian) {
+            forEachCandidate(firstRow, lastRow, longitudeIndex(box.west), longitudeCells - 1, action)
+            forEachCandidate(firstRow, lastRow, 0, longitudeIndex(box.east), action)
+        } else {
+            forEachCandidate(firstRow, lastRow, longitudeIndex(box.west), longitudeIndex(box.east), action)
+        }
+    }
+
+    private inline fun forEachCandidate(firstRow: Int, lastRow: Int, firstColumn: Int, lastColumn: Int, action: (Cell, Int) -> Unit) {
+        // a huge box touches more grid cells than there are events, walk the occupied cells instead
+        if ((lastRow - firstRow + 1).toLong() * (lastColumn - firstColumn + 1) > cells.size) {
+            for ((key, cell) in cells) {
+                val row = key / longitudeCells
+                val column = key % longitudeCells
+                if (row in firstRow..lastRow && column in firstColumn..lastColumn) {
+                    for (i in 0 until cell.size) action(cell, i)
+                }
+            }
+            return
+        }
+        for (row in firstRow..lastRow) {
+            for (column in firstColumn..lastColumn) {
+                val cell = cells[row * longitudeCells + column] ?: continue
+                for (i in 0 until cell.size) action(cell, i)
+            }
+        }
+    }
+
+    private fun cellKey(latitude: Double, longitude: Double): Int =
+        latitudeIndex(latitude) * longitudeCells + longitudeIndex(longitude)
+
+    private fun latitudeIndex(latitude: Double): Int =
+        floor((latitude + 90.0) / cellDegrees).toInt().coerceIn(0, latitudeCells - 1)
+
+    private fun longitudeIndex(longitude: Double): Int =
+        floor((GeoMath.normalizeLongitude(longitude) + 180.0) / cellDegrees).toInt().coerceIn(0, longitudeCells - 1)
+}
@@ -0,0 +1,92 @@
+package com.jjuncoder.sideproject.earthquake.geo
+
+import kotlin.math.asin
+import kotlin.math.atan2
+import kotlin.math.cos
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.sin
+import kotlin.math.sqrt
+
+/**
+ * Great-circle math on a spherical earth, good to about 0.5% which is plenty for "near me".
+ */
+object GeoMath {
+    const val EARTH_RADIUS_KM = 6371.0088
+    const val KM_PER_DEGREE_LATITUDE = Math.PI * EARTH_RADIUS_KM / 180.0
+
+    /**
+     * Haversine distance in km.
+     */
+    fun distanceKm(latitude1: Double, longitude1: Double, latitude2: Double, longitude2: Double): Double {
+        val phi1 = Math.toRadians(latitude1)
+        val phi2 = Math.toRadians(latitude2)
+        val sinHalfDeltaPhi = sin((phi2 - phi1) / 2)
+        val sinHalfDeltaLambda = sin(Math.toRadians(longitude2 - longitude1) / 2)
+        val h = sinHalfDeltaPhi * sinHalfDeltaPhi + cos(phi1) * cos(phi2) * sinHalfDeltaLambda * sinHalfDeltaLambda
+        return 2 * EARTH_RADIUS_KM * asin(min(1.0, sqrt(h)))
+    }
+
+    /**
+     * Distance in km and initial bearing in degrees (0 = north, clockwise) from one origin to [count] points, in one pass.
+     * The origin's trigonometry is computed once, and nothing is allocated per point.
+     */
+    fun distancesAndBearings(
+        originLatitude: Double,
+        originLongitude: Double,
+        latitudes: DoubleArray,
+        longitudes: DoubleArray,
+        count: Int,
+        distancesKm: FloatArray,
+        bearingsDegrees: FloatArray
+    ) {
+        val phi1 = Math.toRadians(originLatitude)
+        val sinPhi1 = sin(phi1)
+        val cosPhi1 = cos(phi1)
+        for (i in 0 until count) {
+            val phi2 = Math.toRadians(latitudes[i])
+            val halfDeltaLambda = Math.toRadians(longitudes[i] - originLongitude) / 2
+            val sinPhi2 = sin(phi2)
+            val cosPhi2 = cos(phi2)
+            val sinHalf = sin(halfDeltaLambda)
+            val cosHalf = cos(halfDeltaLambda)
+            // four trigonometric calls per point, the rest comes from identities:
+            // hav(dPhi) = (1 - cos(dPhi)) / 2, sin(dLambda) = 2 sin cos, cos(dLambda) = 1 - 2 sin^2
+            val cosPhis = cosPhi1 * cosPhi2
+            val cosDeltaPhi = cosPhis + sinPhi1 * sinPhi2
+            val h = (1 - cosDeltaPhi) / 2 + cosPhis * sinHalf * sinHalf
+            distancesKm[i] = (2 * EARTH_RADIUS_KM * asin(min(1.0, sqrt(max(0.0, h))))).toFloat()
+
+            val sinDeltaLambda = 2 * sinHalf * cosHalf
+            val cosDeltaLambda = 1 - 2 * sinHalf * sinHalf
+            val bearing = Math.toDegrees(atan2(sinDeltaLambda * cosPhi2, cosPhi1 * sinPhi2 - sinPhi1 * cosPhi2 * cosDeltaLambda))
+            bearingsDegrees[i] = ((bearing + 360.0) % 360.0).toFloat()
+        }
+    }
+
+    /**
+     * Smallest [BoundingBox] holding every point within [radiusKm] of the center.
+     * It spans all longitudes when the circle reaches a pole.
+     */
+    fun boundingBox(latitude: Double, longitude: Double, radiusKm: Double): BoundingBox {
+        val deltaLatitude = radiusKm / KM_PER_DEGREE_LATITUDE
+        val south = latitude - deltaLatitude
+        val north = latitude + deltaLatitude
+        if (south <= -90.0 || north >= 90.0) {
+            return BoundingBox(maxOf(south, -90.0), -180.0, minOf(north, 90.0), 180.0)
+        }
+        val angularRadius = radiusKm / EARTH_RADIUS_KM
+        val sinDeltaLongitude = sin(angularRadius) / cos(Math.toRadians(latitude))
+        if (sinDeltaLongitude >= 1.0) {
+            return BoundingBox(south, -180.0, north, 180.0)
+        }
+        val deltaLongitude = Math.toDegrees(asin(sinDeltaLongitude))
+        return BoundingBox(south, normalizeLongitude(longitude - deltaLongitude), north, normalizeLongitude(longitude + deltaLongitude))
+    }
+
+    fun normalizeLongitude(longitude: Double): Double = when {
+        longitude < -180.0 -> longitude + 360.0
+        longitude > 180.0 -> longitude - 360.0
+        else -> longitude
+    }
+}
@@ -0,0 +1,54 @@
+package com.jjuncoder.sideproject.earthquake.geo
+
+import androidx.annotation.WorkerThread
+import com.jjuncoder.sideproject.earthquake.model.EarthquakeDataset
+
+/**
+ * Distance and direction of every row of [dataset] from one device position.
+ * The list shows rows in its own order, [indexOf] finds a row of [dataset] by id.
+ */
+class RelativePositions private constructor(
+    val dataset: EarthquakeDataset,
+    val originLatitude: Double,
+    val originLongitude: Double,
+    private val distancesKm: FloatArray,
+    private val bearingsDegrees: FloatArray,
+    private val indexById: Map<String, Int>
+) {
+    companion object {
+        private val COMPASS_POINTS = arrayOf(
+            "N", "NNE", "NE", "ENE", "E", "ESE", "SE", "SSE",
+            "S", "SSW", "SW", "WSW", "W", "WNW", "NW", "NNW"
+        )
+
+        @WorkerThread
+        fun compute(dataset: EarthquakeDataset, latitude: Double, longitude: Double): RelativePositions {
+            val distances = FloatArray(dataset.size)
+            val bearings = FloatArray(dataset.size)
+            GeoMath.distancesAndBearings(
+                latitude, longitude,
+                dataset.latitudeColumn, dataset.longitudeColumn, dataset.size,
+                distances, bearings
+            )
+            val indexById = HashMap<String, Int>(dataset.size * 2)
+            for (index in 0 until dataset.size) indexById[dataset.id(index)] = index
+            return RelativePositions(dataset, latitude, longitude, distances, bearings, indexById)
+        }
+
+        /** 16-wind compass point of a bearing, e.g. 30 -> "NNE". */
+        fun compassPoint(bearingDegrees: Float): String =
+            COMPASS_POINTS[((bearingDegrees / 22.5f + 0.5f).toInt()) % COMPASS_POINTS.size]
+    }
+
+    val size: Int
+        get() = dataset.size
+
+    /**
+     * @return -1 when the row was not in [dataset], e.g. it arrived after the computation.
+     */
+    fun indexOf(id: String): Int = indexById[id] ?: -1
+
+    fun distanceKm(index: Int): Float = distancesKm[index]
+
+    fun bearingDegrees(index: Int): Float = bearingsDegrees[index]
+}
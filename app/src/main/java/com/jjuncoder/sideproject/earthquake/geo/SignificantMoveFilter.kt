@@ -0,0 +1,31 @@
+package com.jjuncoder.sideproject.earthquake.geo
+
+/**
+ * Lets a device position through only when it moved at least [thresholdKm] from the last one let through,
+ * so GPS jitter doesn't recompute every distance.
+ */
+class SignificantMoveFilter(private val thresholdKm: Double = DEFAULT_THRESHOLD_KM) {
+    companion object {
+        const val DEFAULT_THRESHOLD_KM = 1.0
+    }
+
+    var latitude = Double.NaN
+        private set
+    var longitude = Double.NaN
+        private set
+
+    val hasPosition: Boolean
+        get() = !latitude.isNaN()
+
+    /**
+     * @return true when the position is the first one or a significant move, it then becomes the reference.
+     */
+    fun accept(latitude: Double, longitude: Double): Boolean {
+        if (hasPosition && GeoMath.distanceKm(this.latitude, this.longitude, latitude, longitude) < thresholdKm) {
+            return false
+        }
+        this.latitude = latitude
+        this.longitude = longitude
+        return true
+    }
+}
@@ -1,13 +1,34 @@
 package com.jjuncoder.sideproject.earthquake.model
 
-import android.location.Location
 import java.util.*
 
+/**
+ * One event. Rows of an [EarthquakeDataset] are materialized as this class on demand,
+ * so it only holds flat values.
+ *
+ * @param updated epoch millis of the last update of the event
+ * @param depthKm below sea level, negative above it, NaN when the feed does not say
+ */
 data class Earthquake(
     val id: String,
-    val date: Date,
+    val updated: Long,
     val details: String,
-    val location: Location?,
+    val latitude: Double,
+    val longitude: Double,
     val magnitude: Double,
+    val depthKm: Double = Double.NaN
+) {
+    companion object {
+        private const val ID_PREFIX = "urn:earthquake-usgs-gov:"
+        private const val EVENT_PAGE_URL = "https://earthquake.usgs.gov/earthquakes/eventpage/"
+    }
+
+    val date: Date
+        get() = Date(updated)
+
+    /**
+     * e.g. urn:earthquake-usgs-gov:us:6000dlvk -> https://earthquake.usgs.gov/earthquakes/eventpage/us6000dlvk
+     */
     val link: String
-)
\ No newline at end of file
+        get() = EVENT_PAGE_URL + id.removePrefix(ID_PREFIX).replace(":", "")
+}
@@ -0,0 +1,143 @@
+package com.jjuncoder.sideproject.earthquake.model
+
+/**
+ * Column oriented, immutable list of earthquakes.
+ * Coordinates, magnitudes, depths and timestamps live in primitive arrays and equal details Strings are shared,
+ * [get] materializes a small [Earthquake] row only when it is needed, e.g. for binding.
+ */
+class EarthquakeDataset private constructor(
+    private val ids: Array<String>,
+    private val updatedMillis: LongArray,
+    private val details: Array<String>,
+    private val latitudes: DoubleArray,
+    private val longitudes: DoubleArray,
+    private val magnitudes: DoubleArray,
+    private val depths: DoubleArray,
+    override val size: Int
+) : AbstractList<Earthquake>(), RandomAccess {
+
+    companion object {
+        val EMPTY = Builder(0).build()
+
+        fun of(earthquakes: Collection<Earthquake>): EarthquakeDataset =
+            Builder(earthquakes.size).apply { earthquakes.forEach { add(it) } }.build()
+
+        /**
+         * Takes the columns over without copying them, each must hold exactly `ids.size` values.
+         */
+        internal fun wrap(
+            ids: Array<String>,
+            updatedMillis: LongArray,
+            details: Array<String>,
+            latitudes: DoubleArray,
+            longitudes: DoubleArray,
+            magnitudes: DoubleArray,
+            depths: DoubleArray
+        ): EarthquakeDataset {
+            val size = ids.size
+            require(updatedMillis.size == size && details.size == size && latitudes.size == size &&
+                longitudes.size == size && magnitudes.size == size && depths.size == size) { "columns differ in size" }
+            return EarthquakeDataset(ids, updatedMillis, details, latitudes, longitudes, magnitudes, depths, size)
+        }
+    }
+
+    override fun get(index: Int): Earthquake {
+        checkIndex(index)
+        return Earthquake(ids[index], updatedMillis[index], details[index], latitudes[index], longitudes[index], magnitudes[index], depths[index])
+    }
+
+    fun id(index: Int): String = ids[checkIndex(index)]
+
+    fun updated(index: Int): Long = updatedMillis[checkIndex(index)]
+
+    fun details(index: Int): String = details[checkIndex(index)]
+
+    fun latitude(index: Int): Double = latitudes[checkIndex(index)]
+
+    fun longitude(index: Int): Double = longitudes[checkIndex(index)]
+
+    fun magnitude(index: Int): Double = magnitudes[checkIndex(index)]
+
+    fun depthKm(index: Int): Double = depths[checkIndex(index)]
+
+    /** Backing column for batch computations, it must not be modified. Holds at least [size] values. */
+    internal val latitudeColumn: DoubleArray
+        get() = latitudes
+
+    /** Backing column for batch computations, it must not be modified. Holds at least [size] values. */
+    internal val longitudeColumn: DoubleArray
+        get() = longitudes
+
+    private fun checkIndex(index: Int): Int {
+        if (index < 0 || index >= size) throw IndexOutOfBoundsException("index : $index, size : $size")
+        return index
+    }
+
+    class Builder(initialCapacity: Int = 16) {
+        private var ids = arrayOfNulls<String>(initialCapacity)
+        private var updatedMillis = LongArray(initialCapacity)
+        private var details = arrayOfNulls<String>(initialCapacity)
+        private var latitudes = DoubleArray(initialCapacity)
+        private var longitudes = DoubleArray(initialCapacity)
+        private var magnitudes = DoubleArray(initialCapacity)
+        private var depths = DoubleArray(initialCapacity)
+        private var size = 0
+
+        // place names repeat a lot ("South Sandwich Islands region"), keep one instance of each
+        private val sharedDetails = HashMap<String, String>()
+
+        fun add(earthquake: Earthquake): Builder = add(
+            earthquake.id,
+            earthquake.updated,
+            earthquake.details,
+            earthquake.latitude,
+            earthquake.longitude,
+            earthquake.magnitude,
+            earthquake.depthKm
+        )
+
+        fun add(
+            id: String,
+            updated: Long,
+            details: String,
+            latitude: Double,
+            longitude: Double,
+            magnitude: Double,
+            depthKm: Double = Double.NaN
+        ): Builder {
+            if (size == ids.size) grow()
+            ids[size] = id
+            updatedMillis[size] = updated
+            this.details[size] = sharedDetails.getOrPut(details) { details }
+            latitudes[size] = latitude
+            longitudes[size] = longitude
+            magnitudes[size] = magnitude
+            depths[size] = depthKm
+            size++
+            return this
+        }
+
+        @Suppress("UNCHECKED_CAST")
+        fun build(): EarthquakeDataset = EarthquakeDataset(
+            ids.copyOf(size) as Array<String>,
+            updatedMillis.copyOf(size),
+            details.copyOf(size) as Array<String>,
+            latitudes.copyOf(size),
+            longitudes.copyOf(size),
+            magnitudes.copyOf(size),
+            depths.copyOf(size),
+            size
+        )
+
+        private fun grow() {
+            val capacity = maxOf(16, ids.size * 2)
+            ids = ids.copyOf(capacity)
+            updatedMillis = updatedMillis.copyOf(capacity)
+            details = details.copyOf(capacity)
+            latitudes = latitudes.copyOf(capacity)
+            longitudes = longitudes.copyOf(capacity)
+            magnitudes = magnitudes.copyOf(capacity)
+            depths = depths.copyOf(capacity)
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.jjuncoder.sideproject.earthquake.model
+
+import java.util.*
+
+/**
+ * Earthquakes by id, newest first. USGS revises events under the same id, so a revision replaces the row it revises:
+ * the entry with the later [Earthquake.updated] wins, an older or equal one is ignored.
+ * A merge costs a hash lookup per merged entry plus O(log n) tree operations per changed one, it never walks the whole store.
+ * Entries the [retentionPolicy] does not keep are evicted from the old end as part of every merge.
+ * Not thread safe.
+ */
+class EarthquakeStore internal constructor(
+    retentionPolicy: RetentionPolicy,
+    private val clock: () -> Long,
+    private val ordered: SortedEarthquakeList
+) {
+    constructor(
+        retentionPolicy: RetentionPolicy = RetentionPolicy.UNLIMITED,
+        clock: () -> Long = System::currentTimeMillis
+    ) : this(retentionPolicy, clock, SortedEarthquakeList())
+
+    data class Revision(
+        val previous: Earthquake,
+        val current: Earthquake
+    )
+
+    /**
+     * Changes of one merge, they turn the store of [fromVersion] into the one of [toVersion].
+     */
+    data class ChangeSet(
+        val inserted: List<Earthquake>,
+        val updated: List<Revision>,
+        val removed: List<Earthquake>,
+        val fromVersion: Long,
+        val toVersion: Long
+    ) {
+        val isEmpty: Boolean
+            get() = inserted.isEmpty() && updated.isEmpty() && removed.isEmpty()
+
+        val size: Int
+            get() = inserted.size + updated.size + removed.size
+    }
+
+    private val byId = HashMap<String, Earthquake>()
+
+    var retentionPolicy: RetentionPolicy = retentionPolicy
+        private set
+
+    var version = 0L
+        private set
+
+    val size: Int
+        get() = byId.size
+
+    operator fun get(id: String): Earthquake? = byId[id]
+
+    /** Copy of the store, newest first. */
+    fun toList(): List<Earthquake> = ArrayList(ordered)
+
+    fun merge(earthquakes: Iterable<Earthquake>): ChangeSet {
+        val cutoffMillis = retentionPolicy.cutoffMillis(clock())
+        val changes = PendingChanges()
+        for (earthquake in earthquakes) {
+            val previous = byId[earthquake.id]
+            if (previous != null && previous.updated >= earthquake.updated) continue
+            if (!retentionPolicy.keeps(earthquake, cutoffMillis)) {
+                // a revision the policy drops takes the row it revises with it
+                if (previous != null) {
+                    byId.remove(earthquake.id)
+                    changes.remove(previous)
+                }
+                continue
+            }
+            byId[earthquake.id] = earthquake
+            changes.put(previous, earthquake)
+        }
+        return commit(changes, cutoffMillis)
+    }
+
+    fun remove(ids: Collection<String>): ChangeSet {
+        val changes = PendingChanges()
+        ids.forEach { id -> byId.remove(id)?.let { changes.remove(it) } }
+        return commit(changes, Long.MIN_VALUE)
+    }
+
+    /**
+     * Evicts what became too old since the last merge, e.g. when no refresh ran for a while.
+     */
+    fun evict(): ChangeSet = commit(PendingChanges(), retentionPolicy.cutoffMillis(clock()))
+
+    fun applyRetentionPolicy(policy: RetentionPolicy): ChangeSet {
+        retentionPolicy = policy
+        val changes = PendingChanges()
+        if (policy.minMagnitude != null) {
+            // magnitudes are not ordered, this is the one walk over the whole store
+            byId.values.filter { !policy.keeps(it, Long.MIN_VALUE) }.forEach {
+                byId.remove(it.id)
+                changes.remove(it)
+            }
+        }
+        return commit(changes, policy.cutoffMillis(clock()))
+    }
+
+    private fun commit(changes: PendingChanges, cutoffMillis: Long): ChangeSet {
+        changes.removed.values.forEach { ordered.delete(it) }
+        changes.updated.values.forEach {
+            ordered.delete(it.previous)
+            ordered.insert(it.current)
+        }
+        ordered.insertAll(changes.inserted.values)
+
+        // newest first, so whatever is too old or above the limit sits at the end
+        val maxCount = retentionPolicy.maxCount ?: Int.MAX_VALUE
+        while (ordered.isNotEmpty() && (ordered.size > maxCount || ordered.last().updated < cutoffMillis)) {
+            val evicted = ordered.deleteLast()
+            byId.remove(evicted.id)
+            changes.remove(evicted)
+        }
+
+        val fromVersion = version
+        if (!changes.isEmpty) version++
+        return ChangeSet(
+            ArrayList(changes.inserted.values),
+            ArrayList(changes.updated.values),
+            ArrayList(changes.removed.values),
+            fromVersion,
+            version
+        )
+    }
+
+    /**
+     * Changes of one call relative to the store before it. An id can come more than once,
+     * e.g. revised twice or inserted and evicted again, it is reported once with its net change.
+     */
+    private class PendingChanges {
+        val inserted = LinkedHashMap<String, Earthquake>()
+        val updated = LinkedHashMap<String, Revision>()
+        val removed = LinkedHashMap<String, Earthquake>()
+
+        val isEmpty: Boolean
+            get() = inserted.isEmpty() && updated.isEmpty() && removed.isEmpty()
+
+        /**
+         * @param previous the row [current] replaces, null for a new id.
+         */
+        fun put(previous: Earthquake?, current: Earthquake) {
+            val id = current.id
+            val gone = removed.remove(id)
+            when {
+                gone != null -> updated[id] = Revision(gone, current)
+                inserted.containsKey(id) || previous == null -> inserted[id] = current
+                else -> updated[id] = Revision(updated[id]?.previous ?: previous, current)
+            }
+        }
+
+        /**
+         * @param earthquake the row as the store holds it right now.
+         */
+        fun remove(earthquake: Earthquake) {
+            val id = earthquake.id
+            if (inserted.remove(id) != null) return
+            removed[id] = updated.remove(id)?.previous ?: earthquake
+        }
+    }
+}
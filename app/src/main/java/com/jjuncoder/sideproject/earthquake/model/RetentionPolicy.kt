@@ -0,0 +1,29 @@
+package com.jjuncoder.sideproject.earthquake.model
+
+/**
+ * What an [EarthquakeStore] keeps, so a screen left open for days does not grow without bound.
+ * @param maxAgeMillis entries last updated longer ago are evicted, null to keep them regardless of age.
+ * @param maxCount only the newest entries are kept above this size, null for no limit.
+ * @param minMagnitude weaker entries are not kept, neither are ones without a magnitude. Null keeps every magnitude.
+ */
+data class RetentionPolicy(
+    val maxAgeMillis: Long? = null,
+    val maxCount: Int? = null,
+    val minMagnitude: Double? = null
+) {
+    companion object {
+        val UNLIMITED = RetentionPolicy()
+    }
+
+    init {
+        require(maxAgeMillis == null || maxAgeMillis >= 0) { "maxAgeMillis must not be negative : $maxAgeMillis" }
+        require(maxCount == null || maxCount >= 0) { "maxCount must not be negative : $maxCount" }
+    }
+
+    /** Entries updated before this are too old. */
+    fun cutoffMillis(nowMillis: Long): Long =
+        if (maxAgeMillis == null) Long.MIN_VALUE else nowMillis - maxAgeMillis
+
+    fun keeps(earthquake: Earthquake, cutoffMillis: Long): Boolean =
+        earthquake.updated >= cutoffMillis && (minMagnitude == null || earthquake.magnitude >= minMagnitude)
+}
@@ -0,0 +1,230 @@
+package com.jjuncoder.sideproject.earthquake.model
+
+import java.util.*
+
+/**
+ * Earthquakes kept in [NEWEST_FIRST] order, in an AVL tree whose nodes know the size of their subtree.
+ * Inserting, deleting and finding a position or the entry at a position are O(log n), so a change never shifts
+ * or walks the whole list. Iterating is O(n).
+ */
+class SortedEarthquakeList internal constructor(
+    // has to sort like NEWEST_FIRST, tests wrap it to count comparisons
+    private val order: Comparator<Earthquake>
+) : AbstractList<Earthquake>() {
+    companion object {
+        /** Display order, ties are broken by id so every entry has exactly one position. */
+        val NEWEST_FIRST: Comparator<Earthquake> = compareByDescending<Earthquake> { it.updated }.thenBy { it.id }
+    }
+
+    constructor() : this(NEWEST_FIRST)
+
+    private class Node(val value: Earthquake) {
+        var left: Node? = null
+        var right: Node? = null
+        var height = 1
+        var size = 1
+    }
+
+    private var root: Node? = null
+
+    // rank of the last inserted entry, set while descending
+    private var insertedAt = 0
+
+    override val size: Int
+        get() = sizeOf(root)
+
+    override fun get(index: Int): Earthquake {
+        if (index < 0 || index >= size) throw IndexOutOfBoundsException("index : $index, size : $size")
+        var node = root!!
+        var rank = index
+        while (true) {
+            val leftSize = sizeOf(node.left)
+            node = when {
+                rank < leftSize -> node.left!!
+                rank == leftSize -> return node.value
+                else -> {
+                    rank -= leftSize + 1
+                    node.right!!
+                }
+            }
+        }
+    }
+
+    override fun iterator(): MutableIterator<Earthquake> = object : MutableIterator<Earthquake> {
+        // the path to the next entry, in order
+        private val stack = ArrayDeque<Node>().also { pushLeft(it, root) }
+
+        override fun hasNext(): Boolean = stack.isNotEmpty()
+
+        override fun next(): Earthquake {
+            val node = stack.pollFirst() ?: throw NoSuchElementException()
+            pushLeft(stack, node.right)
+            return node.value
+        }
+
+        override fun remove() = throw UnsupportedOperationException()
+    }
+
+    /**
+     * @return the position of [earthquake], or -1 when no entry with its id and [Earthquake.updated] is in the list.
+     */
+    fun positionOf(earthquake: Earthquake): Int {
+        var node = root
+        var rank = 0
+        while (node != null) {
+            val comparison = order.compare(earthquake, node.value)
+            node = when {
+                comparison < 0 -> node.left
+                comparison > 0 -> {
+                    rank += sizeOf(node.left) + 1
+                    node.right
+                }
+                else -> return rank + sizeOf(node.left)
+            }
+        }
+        return -1
+    }
+
+    /**
+     * @return the position [earthquake] was inserted at.
+     */
+    fun insert(earthquake: Earthquake): Int {
+        insertedAt = 0
+        root = insert(root, earthquake)
+        return insertedAt
+    }
+
+    fun insertAll(earthquakes: Collection<Earthquake>) {
+        if (root == null) {
+            // e.g. the first load, a balanced tree is built straight from the sorted entries
+            val sorted = earthquakes.sortedWith(order)
+            root = build(sorted, 0, sorted.size)
+        } else {
+            earthquakes.forEach { insert(it) }
+        }
+    }
+
+    /**
+     * @return the former position of [earthquake], -1 when it was not in the list.
+     */
+    fun delete(earthquake: Earthquake): Int {
+        val position = positionOf(earthquake)
+        if (position >= 0) root = delete(root!!, earthquake)
+        return position
+    }
+
+    /** Removes the oldest entry. */
+    fun deleteLast(): Earthquake {
+        var node = root ?: throw NoSuchElementException()
+        while (true) node = node.right ?: break
+        root = deleteMax(root!!)
+        return node.value
+    }
+
+    fun replaceAll(earthquakes: Collection<Earthquake>) {
+        root = null
+        insertAll(earthquakes)
+    }
+
+    private fun insert(node: Node?, earthquake: Earthquake): Node {
+        if (node == null) return Node(earthquake)
+        if (order.compare(earthquake, node.value) < 0) {
+            node.left = insert(node.left, earthquake)
+        } else {
+            insertedAt += sizeOf(node.left) + 1
+            node.right = insert(node.right, earthquake)
+        }
+        return rebalance(node)
+    }
+
+    private fun delete(node: Node, earthquake: Earthquake): Node? {
+        val comparison = order.compare(earthquake, node.value)
+        when {
+            comparison < 0 -> node.left = delete(node.left!!, earthquake)
+            comparison > 0 -> node.right = delete(node.right!!, earthquake)
+            else -> {
+                val left = node.left ?: return node.right
+                val right = node.right ?: return left
+                var successor = right
+                while (true) successor = successor.left ?: break
+                successor.right = deleteMin(right)
+                successor.left = left
+                return rebalance(successor)
+            }
+        }
+        return rebalance(node)
+    }
+
+    private fun deleteMin(node: Node): Node? {
+        val left = node.left ?: return node.right
+        node.left = deleteMin(left)
+        return rebalance(node)
+    }
+
+    private fun deleteMax(node: Node): Node? {
+        val right = node.right ?: return node.left
+        node.right = deleteMax(right)
+        return rebalance(node)
+    }
+
+    private fun build(sorted: List<Earthquake>, from: Int, to: Int): Node? {
+        if (from >= to) return null
+        val middle = (from + to) ushr 1
+        return Node(sorted[middle]).apply {
+            left = build(sorted, from, middle)
+            right = build(sorted, middle + 1, to)
+            update(this)
+        }
+    }
+
+    private fun rebalance(node: Node): Node {
+        update(node)
+        val balance = heightOf(node.left) - heightOf(node.right)
+        if (balance > 1) {
+            val left = node.left!!
+            if (heightOf(left.left) < heightOf(left.right)) node.left = rotateLeft(left)
+            return rotateRight(node)
+        }
+        if (balance < -1) {
+            val right = node.right!!
+            if (heightOf(right.right) < heightOf(right.left)) node.right = rotateRight(right)
+            return rotateLeft(node)
+        }
+        return node
+    }
+
+    private fun rotateRight(node: Node): Node {
+        val left = node.left!!
+        node.left = left.right
+        left.right = node
+        update(node)
+        update(left)
+        return left
+    }
+
+    private fun rotateLeft(node: Node): Node {
+        val right = node.right!!
+        node.right = right.left
+        right.left = node
+        update(node)
+        update(right)
+        return right
+    }
+
+    private fun update(node: Node) {
+        node.height = 1 + maxOf(heightOf(node.left), heightOf(node.right))
+        node.size = 1 + sizeOf(node.left) + sizeOf(node.right)
+    }
+
+    private fun heightOf(node: Node?): Int = node?.height ?: 0
+
+    private fun sizeOf(node: Node?): Int = node?.size ?: 0
+
+    private fun pushLeft(stack: ArrayDeque<Node>, from: Node?) {
+        var node = from
+        while (node != null) {
+            stack.addFirst(node)
+            node = node.left
+        }
+    }
+}
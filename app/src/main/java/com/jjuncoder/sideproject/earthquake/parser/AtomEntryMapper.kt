@@ -0,0 +1,23 @@
+package com.jjuncoder.sideproject.earthquake.parser
+
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+
+/**
+ * Decodes the raw text of an Atom `entry`, used by parsers that only have Strings at hand.
+ * The result is the same [Earthquake] [PullFeedParser] builds from the parser's text buffer.
+ */
+internal object AtomEntryMapper {
+    fun toEarthquake(id: String, updated: String, point: String, title: String, elevation: String? = null): Earthquake {
+        val coordinates = DoubleArray(2)
+        AtomFieldDecoder.parsePoint(point, out = coordinates)
+        return Earthquake(
+            id,
+            AtomFieldDecoder.parseTimestamp(updated),
+            title.substring(AtomFieldDecoder.titlePlaceStart(title)),
+            coordinates[0],
+            coordinates[1],
+            AtomFieldDecoder.parseTitleMagnitude(title),
+            elevation?.let { AtomFieldDecoder.parseElevationDepthKm(it) } ?: Double.NaN
+        )
+    }
+}
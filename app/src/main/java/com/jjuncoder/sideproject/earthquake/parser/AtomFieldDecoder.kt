@@ -0,0 +1,188 @@
+package com.jjuncoder.sideproject.earthquake.parser
+
+/**
+ * Decodes the Atom entry fields straight from the characters of the feed,
+ * without SimpleDateFormat, split() or substring().
+ * Every function reads [text] between [start] (inclusive) and [end] (exclusive).
+ */
+object AtomFieldDecoder {
+    private const val MAX_EXACT_DIGITS = 15
+    private val POWERS_OF_TEN = DoubleArray(MAX_EXACT_DIGITS + 1).apply {
+        this[0] = 1.0
+        for (i in 1 until size) this[i] = this[i - 1] * 10
+    }
+
+    /**
+     * Parses an ISO-8601 timestamp such as `2021-03-20T09:48:32.040Z` into epoch millis.
+     * The fraction is optional, the offset is either `Z` or `±hh:mm`.
+     */
+    fun parseTimestamp(text: CharSequence, start: Int = 0, end: Int = text.length): Long {
+        if (end - start < 20) throw IllegalArgumentException("Too short for a timestamp : ${text.subSequence(start, end)}")
+        val year = parseDigits(text, start, 4)
+        expect(text, start + 4, '-')
+        val month = parseDigits(text, start + 5, 2)
+        expect(text, start + 7, '-')
+        val day = parseDigits(text, start + 8, 2)
+        expect(text, start + 10, 'T')
+        val hour = parseDigits(text, start + 11, 2)
+        expect(text, start + 13, ':')
+        val minute = parseDigits(text, start + 14, 2)
+        expect(text, start + 16, ':')
+        val second = parseDigits(text, start + 17, 2)
+
+        var i = start + 19
+        var millis = 0
+        if (text[i] == '.') {
+            i++
+            // only the first three digits matter, the scale drops to 0 after them
+            var scale = 100
+            while (i < end && text[i] in '0'..'9') {
+                millis += (text[i] - '0') * scale
+                scale /= 10
+                i++
+            }
+        }
+
+        var offsetMinutes = 0
+        if (i < end && text[i] == 'Z') {
+            i++
+        } else if (i + 6 <= end && (text[i] == '+' || text[i] == '-')) {
+            val sign = if (text[i] == '-') -1 else 1
+            expect(text, i + 3, ':')
+            offsetMinutes = sign * (parseDigits(text, i + 1, 2) * 60 + parseDigits(text, i + 4, 2))
+            i += 6
+        }
+        if (i != end || month !in 1..12 || day !in 1..31 || hour > 23 || minute > 59 || second > 60) {
+            throw IllegalArgumentException("Not an ISO-8601 timestamp : ${text.subSequence(start, end)}")
+        }
+
+        val epochMinutes = (daysFromCivil(year, month, day) * 24 + hour) * 60 + minute - offsetMinutes
+        return epochMinutes * 60_000L + second * 1000L + millis
+    }
+
+    /**
+     * Parses a `georss:point` value, "lat lon", into [out] : out[0] = latitude, out[1] = longitude.
+     */
+    fun parsePoint(text: CharSequence, start: Int = 0, end: Int = text.length, out: DoubleArray) {
+        val latStart = skipWhitespace(text, start, end)
+        val latEnd = findWhitespace(text, latStart, end)
+        val lonStart = skipWhitespace(text, latEnd, end)
+        val lonEnd = findWhitespace(text, lonStart, end)
+        if (latStart == latEnd || lonStart == lonEnd) {
+            throw IllegalArgumentException("Not a georss point : ${text.subSequence(start, end)}")
+        }
+        out[0] = parseDouble(text, latStart, latEnd)
+        out[1] = parseDouble(text, lonStart, lonEnd)
+    }
+
+    /**
+     * Returns the depth in km of a `georss:elev` value, meters above sea level : "-35000" is 35 km deep.
+     * NaN when the value is blank.
+     */
+    fun parseElevationDepthKm(text: CharSequence, start: Int = 0, end: Int = text.length): Double {
+        val valueStart = skipWhitespace(text, start, end)
+        val valueEnd = findWhitespace(text, valueStart, end)
+        if (valueStart == valueEnd) return Double.NaN
+        return -parseDouble(text, valueStart, valueEnd) / 1000.0
+    }
+
+    /**
+     * Returns the magnitude of a "M 4.6 - 113 km SE of Katsuura, Japan" title, or NaN when the title has none.
+     * Small events of the all_* feeds are negative, e.g. "M -0.4 - 10km NE of Pahala, Hawaii".
+     */
+    fun parseTitleMagnitude(text: CharSequence, start: Int = 0, end: Int = text.length): Double {
+        var i = skipWhitespace(text, start, end)
+        if (i >= end || text[i] != 'M') return Double.NaN
+        i = skipWhitespace(text, i + 1, end)
+        val magnitudeEnd = findWhitespace(text, i, end)
+        val digitsStart = if (i < magnitudeEnd && text[i] == '-') i + 1 else i
+        if (digitsStart == magnitudeEnd || text[digitsStart] !in '0'..'9') return Double.NaN
+        return parseDouble(text, i, magnitudeEnd)
+    }
+
+    /**
+     * Returns where the place starts in a "M 4.6 - 113 km SE of Katsuura, Japan" title,
+     * or [start] when the title has no " - " separator.
+     */
+    fun titlePlaceStart(text: CharSequence, start: Int = 0, end: Int = text.length): Int {
+        for (i in start until end - 2) {
+            if (text[i] == ' ' && text[i + 1] == '-' && text[i + 2] == ' ') {
+                return skipWhitespace(text, i + 3, end)
+            }
+        }
+        return start
+    }
+
+    /**
+     * Parses a plain decimal number such as `-150.0577`.
+     * Falls back to [String.toDouble] for inputs that can not be represented exactly, e.g. exponents or more than 15 digits.
+     */
+    fun parseDouble(text: CharSequence, start: Int = 0, end: Int = text.length): Double {
+        var i = start
+        val negative = i < end && text[i] == '-'
+        if (negative || (i < end && text[i] == '+')) i++
+
+        var mantissa = 0L
+        var digits = 0
+        var fractionDigits = 0
+        var seenDot = false
+        while (i < end) {
+            val c = text[i]
+            if (c in '0'..'9') {
+                mantissa = mantissa * 10 + (c - '0')
+                digits++
+                if (seenDot) fractionDigits++
+            } else if (c == '.' && !seenDot) {
+                seenDot = true
+            } else {
+                break
+            }
+            i++
+        }
+        if (i != end || digits == 0 || digits > MAX_EXACT_DIGITS) {
+            return text.subSequence(start, end).toString().toDouble()
+        }
+        // both operands are exact doubles, so the division is correctly rounded like String.toDouble()
+        val value = mantissa / POWERS_OF_TEN[fractionDigits]
+        return if (negative) -value else value
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date.
+     * See http://howardhinnant.github.io/date_algorithms.html#days_from_civil
+     */
+    private fun daysFromCivil(year: Int, month: Int, day: Int): Long {
+        val y = if (month <= 2) year - 1 else year
+        val era = (if (y >= 0) y else y - 399) / 400
+        val yearOfEra = y - era * 400
+        val dayOfYear = (153 * (if (month > 2) month - 3 else month + 9) + 2) / 5 + day - 1
+        val dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear
+        return era * 146097L + dayOfEra - 719468
+    }
+
+    private fun parseDigits(text: CharSequence, start: Int, count: Int): Int {
+        var value = 0
+        for (i in start until start + count) {
+            val c = text[i]
+            if (c !in '0'..'9') throw IllegalArgumentException("Expected a digit at $i : ${text.subSequence(start, start + count)}")
+            value = value * 10 + (c - '0')
+        }
+        return value
+    }
+
+    private fun expect(text: CharSequence, index: Int, expected: Char) {
+        if (text[index] != expected) throw IllegalArgumentException("Expected '$expected' at $index")
+    }
+
+    private fun skipWhitespace(text: CharSequence, start: Int, end: Int): Int {
+        var i = start
+        while (i < end && text[i].isWhitespace()) i++
+        return i
+    }
+
+    private fun findWhitespace(text: CharSequence, start: Int, end: Int): Int {
+        var i = start
+        while (i < end && !text[i].isWhitespace()) i++
+        return i
+    }
+}
@@ -0,0 +1,26 @@
+package com.jjuncoder.sideproject.earthquake.parser
+
+/**
+ * Reusable [CharSequence] over a region of a char array, e.g. the text buffer of an XmlPullParser.
+ * Only valid until the owner of the array moves on.
+ */
+internal class CharArrayView : CharSequence {
+    private var chars: CharArray = CharArray(0)
+    private var offset = 0
+    override var length = 0
+        private set
+
+    fun set(chars: CharArray, offset: Int, length: Int): CharArrayView {
+        this.chars = chars
+        this.offset = offset
+        this.length = length
+        return this
+    }
+
+    override fun get(index: Int): Char = chars[offset + index]
+
+    override fun subSequence(startIndex: Int, endIndex: Int): CharSequence =
+        String(chars, offset + startIndex, endIndex - startIndex)
+
+    override fun toString(): String = String(chars, offset, length)
+}
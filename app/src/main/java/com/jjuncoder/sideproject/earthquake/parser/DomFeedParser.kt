@@ -0,0 +1,41 @@
+package com.jjuncoder.sideproject.earthquake.parser
+
+import android.util.Log
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import com.jjuncoder.sideproject.earthquake.viewmodel.EarthquakeViewModel
+import org.w3c.dom.Element
+import java.io.InputStream
+import javax.xml.parsers.DocumentBuilderFactory
+
+/**
+ * Builds the whole document in memory and then walks it.
+ * Kept next to [PullFeedParser] so both can be compared on the same feed.
+ */
+class DomFeedParser : EarthquakeFeedParser {
+
+    override fun parse(input: InputStream): Sequence<Earthquake> {
+        val documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+        val dom = documentBuilder.parse(input)
+        val nodeList = dom.documentElement.getElementsByTagName("entry")
+        return (0 until nodeList.length).asSequence()
+            .mapNotNull { nodeList.item(it) as? Element }
+            .mapNotNull { parseNode(it) }
+    }
+
+    private fun parseNode(entry: Element): Earthquake? {
+        entry.apply {
+            return try {
+                AtomEntryMapper.toEarthquake(
+                    id = getElementsByTagName("id").item(0).firstChild.nodeValue,
+                    updated = getElementsByTagName("updated").item(0).firstChild.nodeValue,
+                    point = getElementsByTagName("georss:point").item(0).firstChild.nodeValue,
+                    title = getElementsByTagName("title").item(0).firstChild.nodeValue,
+                    elevation = getElementsByTagName("georss:elev").item(0)?.firstChild?.nodeValue
+                )
+            } catch (e: IllegalArgumentException) {
+                Log.w(EarthquakeViewModel.TAG, "skip malformed entry", e)
+                null
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.jjuncoder.sideproject.earthquake.parser
+
+import androidx.annotation.WorkerThread
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import java.io.InputStream
+
+interface EarthquakeFeedParser {
+    /**
+     * Returns the entries of the feed in document order.
+     * The sequence is lazy, so it has to be consumed while [input] is still open.
+     */
+    @WorkerThread
+    fun parse(input: InputStream): Sequence<Earthquake>
+}
@@ -0,0 +1,7 @@
+package com.jjuncoder.sideproject.earthquake.parser
+
+/**
+ * The body is not a valid feed. Fetching it again returns the same body, so unlike an
+ * [java.io.IOException] of the transport it is not retried, the same as an Atom XmlPullParserException.
+ */
+class FeedFormatException(message: String, cause: Throwable? = null) : Exception(message, cause)
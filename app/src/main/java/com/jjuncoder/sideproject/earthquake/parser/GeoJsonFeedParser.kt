@@ -0,0 +1,171 @@
+package com.jjuncoder.sideproject.earthquake.parser
+
+import android.util.Log
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import com.google.gson.stream.MalformedJsonException
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import com.jjuncoder.sideproject.earthquake.viewmodel.EarthquakeViewModel
+import java.io.InputStream
+import java.io.InputStreamReader
+
+/**
+ * Reads the GeoJSON summary feed token by token.
+ * Magnitude and times are plain numbers there, so nothing has to be cut out of titles or dates.
+ * See https://earthquake.usgs.gov/earthquakes/feed/v1.0/geojson.php
+ */
+class GeoJsonFeedParser : EarthquakeFeedParser {
+    companion object {
+        /** Atom ids are `urn:earthquake-usgs-gov:<net>:<code>`, GeoJSON ids are built the same way so both formats merge. */
+        private const val ID_PREFIX = "urn:earthquake-usgs-gov:"
+    }
+
+    /**
+     * A malformed body fails with [FeedFormatException], a failing [input] still with its [java.io.IOException].
+     */
+    override fun parse(input: InputStream): Sequence<Earthquake> = sequence {
+        val reader = JsonReader(InputStreamReader(input, Charsets.UTF_8))
+        val featureReader = FeatureReader(reader)
+        try {
+            reader.beginObject()
+            while (reader.hasNext()) {
+                if (reader.nextName() == "features") {
+                    reader.beginArray()
+                    while (reader.hasNext()) {
+                        featureReader.read()?.let { yield(it) }
+                    }
+                    reader.endArray()
+                } else {
+                    reader.skipValue()
+                }
+            }
+            reader.endObject()
+        } catch (e: MalformedJsonException) {
+            throw FeedFormatException("malformed GeoJSON at ${reader.path}", e)
+        } catch (e: IllegalStateException) {
+            // JsonReader reports an unexpected token this way
+            throw FeedFormatException("unexpected GeoJSON at ${reader.path}", e)
+        } catch (e: NumberFormatException) {
+            throw FeedFormatException("malformed number at ${reader.path}", e)
+        }
+    }
+
+    /**
+     * Scratch state of one [parse] call, reused for every feature.
+     */
+    private class FeatureReader(private val reader: JsonReader) {
+        private var featureId: String? = null
+        private var network: String? = null
+        private var code: String? = null
+        private var place: String? = null
+        private var magnitude = Double.NaN
+        private var updatedMillis = Long.MIN_VALUE
+        private var latitude = Double.NaN
+        private var longitude = Double.NaN
+        private var depthKm = Double.NaN
+
+        /**
+         * Consumes the current feature object.
+         * Returns null when a required field is missing or malformed.
+         */
+        fun read(): Earthquake? {
+            featureId = null
+            network = null
+            code = null
+            place = null
+            magnitude = Double.NaN
+            updatedMillis = Long.MIN_VALUE
+            latitude = Double.NaN
+            longitude = Double.NaN
+            depthKm = Double.NaN
+
+            reader.beginObject()
+            while (reader.hasNext()) {
+                when (reader.nextName()) {
+                    "id" -> featureId = nextStringOrNull()
+                    "properties" -> readProperties()
+                    "geometry" -> readGeometry()
+                    else -> reader.skipValue()
+                }
+            }
+            reader.endObject()
+
+            val id = if (network != null && code != null) {
+                ID_PREFIX + network + ":" + code
+            } else {
+                featureId
+            }
+            val entryPlace = place
+            if (id == null || entryPlace == null || latitude.isNaN() || longitude.isNaN() || updatedMillis == Long.MIN_VALUE) {
+                Log.w(EarthquakeViewModel.TAG, "skip incomplete feature : $featureId")
+                return null
+            }
+            return Earthquake(id, updatedMillis, entryPlace, latitude, longitude, magnitude, depthKm)
+        }
+
+        private fun readProperties() {
+            reader.beginObject()
+            while (reader.hasNext()) {
+                when (reader.nextName()) {
+                    "mag" -> magnitude = nextDoubleOrNaN()
+                    "place" -> place = nextStringOrNull()
+                    "updated" -> updatedMillis = nextLongOrMin()
+                    "net" -> network = nextStringOrNull()
+                    "code" -> code = nextStringOrNull()
+                    else -> reader.skipValue()
+                }
+            }
+            reader.endObject()
+        }
+
+        /**
+         * GeoJSON points are `[longitude, latitude, depth]`.
+         */
+        private fun readGeometry() {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull()
+                return
+            }
+            reader.beginObject()
+            while (reader.hasNext()) {
+                if (reader.nextName() == "coordinates") {
+                    reader.beginArray()
+                    longitude = nextDoubleOrNaN()
+                    latitude = nextDoubleOrNaN()
+                    if (reader.hasNext()) depthKm = nextDoubleOrNaN()
+                    while (reader.hasNext()) reader.skipValue()
+                    reader.endArray()
+                } else {
+                    reader.skipValue()
+                }
+            }
+            reader.endObject()
+        }
+
+        private fun nextStringOrNull(): String? =
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull()
+                null
+            } else {
+                reader.nextString()
+            }
+
+        private fun nextDoubleOrNaN(): Double =
+            when (reader.peek()) {
+                JsonToken.NUMBER -> reader.nextDouble()
+                JsonToken.NULL -> {
+                    reader.nextNull()
+                    Double.NaN
+                }
+                else -> throw FeedFormatException("Expected a number at ${reader.path}")
+            }
+
+        private fun nextLongOrMin(): Long =
+            if (reader.peek() == JsonToken.NUMBER) {
+                reader.nextLong()
+            } else {
+                reader.skipValue()
+                Long.MIN_VALUE
+            }
+    }
+}
@@ -0,0 +1,123 @@
+package com.jjuncoder.sideproject.earthquake.parser
+
+import android.util.Log
+import android.util.Xml
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import com.jjuncoder.sideproject.earthquake.viewmodel.EarthquakeViewModel
+import org.xmlpull.v1.XmlPullParser
+import java.io.InputStream
+
+/**
+ * Reads the Atom feed in a single forward pass.
+ * Only the fields of the current `entry` are kept, so memory does not grow with the feed size.
+ * Numeric fields are decoded from the parser's text buffer by [AtomFieldDecoder] without creating Strings.
+ */
+class PullFeedParser(
+    private val parserFactory: () -> XmlPullParser = { Xml.newPullParser() }
+) : EarthquakeFeedParser {
+    companion object {
+        private const val TAG_ENTRY = "entry"
+        private const val TAG_ID = "id"
+        private const val TAG_TITLE = "title"
+        private const val TAG_UPDATED = "updated"
+        private const val TAG_POINT = "georss:point"
+        private const val TAG_ELEVATION = "georss:elev"
+    }
+
+    override fun parse(input: InputStream): Sequence<Earthquake> = sequence {
+        val parser = parserFactory().apply {
+            setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false)
+            setInput(input, null)
+        }
+        val entryReader = EntryReader(parser)
+        var eventType = parser.eventType
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.START_TAG && parser.name == TAG_ENTRY) {
+                entryReader.read()?.let { yield(it) }
+            }
+            eventType = parser.next()
+        }
+    }
+
+    /**
+     * Scratch state of one [parse] call, reused for every entry.
+     */
+    private class EntryReader(private val parser: XmlPullParser) {
+        private val textRange = IntArray(2)
+        private val textView = CharArrayView()
+        private val coordinates = DoubleArray(2)
+
+        /**
+         * Consumes the current `entry` up to its END_TAG.
+         * Returns null when a required field is missing or malformed.
+         */
+        fun read(): Earthquake? {
+            val entryDepth = parser.depth
+            var id: String? = null
+            var place: String? = null
+            var magnitude = Double.NaN
+            var depthKm = Double.NaN
+            var updatedMillis = Long.MIN_VALUE
+            var hasPoint = false
+
+            try {
+                var eventType = parser.next()
+                while (!(eventType == XmlPullParser.END_TAG && parser.depth == entryDepth) && eventType != XmlPullParser.END_DOCUMENT) {
+                    if (eventType == XmlPullParser.START_TAG) {
+                        when (parser.name) {
+                            TAG_ID -> id = readText()?.toString()
+                            TAG_TITLE -> readText()?.let {
+                                magnitude = AtomFieldDecoder.parseTitleMagnitude(it)
+                                place = it.subSequence(AtomFieldDecoder.titlePlaceStart(it), it.length).toString()
+                            }
+                            TAG_UPDATED -> readText()?.let { updatedMillis = AtomFieldDecoder.parseTimestamp(it) }
+                            TAG_POINT -> readText()?.let {
+                                AtomFieldDecoder.parsePoint(it, out = coordinates)
+                                hasPoint = true
+                            }
+                            TAG_ELEVATION -> readText()?.let { depthKm = AtomFieldDecoder.parseElevationDepthKm(it) }
+                        }
+                    }
+                    eventType = parser.next()
+                }
+            } catch (e: IllegalArgumentException) {
+                Log.w(EarthquakeViewModel.TAG, "skip malformed entry : $id", e)
+                skipEntry(entryDepth)
+                return null
+            }
+
+            val entryId = id
+            val entryPlace = place
+            if (entryId == null || entryPlace == null || !hasPoint || updatedMillis == Long.MIN_VALUE) {
+                Log.w(EarthquakeViewModel.TAG, "skip incomplete entry : $id")
+                return null
+            }
+            return Earthquake(
+                entryId,
+                updatedMillis,
+                entryPlace,
+                coordinates[0],
+                coordinates[1],
+                magnitude,
+                depthKm
+            )
+        }
+
+        /**
+         * Moves to the text of the current element and exposes the parser's buffer without copying it.
+         * The view is only valid until the next call to the parser.
+         */
+        private fun readText(): CharSequence? {
+            if (parser.next() != XmlPullParser.TEXT) return null
+            val chars = parser.getTextCharacters(textRange)
+            return textView.set(chars, textRange[0], textRange[1])
+        }
+
+        private fun skipEntry(entryDepth: Int) {
+            var eventType = parser.eventType
+            while (!(eventType == XmlPullParser.END_TAG && parser.depth == entryDepth) && eventType != XmlPullParser.END_DOCUMENT) {
+                eventType = parser.next()
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.jjuncoder.sideproject.earthquake.query
+
+/**
+ * What the list shows.
+ * @param minMagnitude weaker entries are filtered out, so are ones without a magnitude. Null keeps every magnitude.
+ * @param windowMillis entries last updated longer ago are filtered out, null keeps them regardless of age.
+ */
+data class EarthquakeQuery(
+    val minMagnitude: Double? = null,
+    val windowMillis: Long? = null,
+    val sort: Sort = Sort.TIME
+) {
+    enum class Sort {
+        /** Newest first, the order of the store. */
+        TIME,
+
+        /** Strongest first, entries without a magnitude last. */
+        MAGNITUDE,
+
+        /** Nearest to the device first, entries without a known distance last. */
+        DISTANCE
+    }
+
+    companion object {
+        /** Everything, newest first. */
+        val ALL = EarthquakeQuery()
+    }
+
+    init {
+        require(windowMillis == null || windowMillis >= 0) { "windowMillis must not be negative : $windowMillis" }
+    }
+
+    /** Entries updated before this are outside the window. */
+    fun cutoffMillis(nowMillis: Long): Long =
+        if (windowMillis == null) Long.MIN_VALUE else nowMillis - windowMillis
+}
@@ -0,0 +1,176 @@
+package com.jjuncoder.sideproject.earthquake.query
+
+import androidx.annotation.WorkerThread
+import com.jjuncoder.sideproject.earthquake.geo.RelativePositions
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import com.jjuncoder.sideproject.earthquake.model.EarthquakeDataset
+import java.util.*
+
+/**
+ * Rows of one [EarthquakeDataset] newest first and strongest first, with their keys in sorted primitive arrays.
+ * A time window or a minimum magnitude is a binary search for the end of a prefix of one of the orders,
+ * so a query only walks the rows that pass its more selective threshold instead of the whole dataset.
+ * Results come out in the other order by sorting ranks, plain ints, instead of rows.
+ *
+ * Immutable once built, queries can run on any thread.
+ */
+class EarthquakeQueryIndex private constructor(
+    val dataset: EarthquakeDataset,
+    private val newestFirst: IntArray,
+    private val updatedDescending: LongArray,
+    private val strongestFirst: IntArray,
+    // entries without a magnitude are sorted last, as negative infinity
+    private val magnitudesDescending: DoubleArray
+) {
+    companion object {
+        @WorkerThread
+        fun build(dataset: EarthquakeDataset): EarthquakeQueryIndex {
+            // same order as the store, ties broken by id
+            val newestFirst = sortedRows(dataset.size, compareByDescending<Int> { dataset.updated(it) }.thenBy { dataset.id(it) })
+            val strongestFirst = sortedRows(dataset.size, compareByDescending<Int> { magnitudeKey(dataset, it) }
+                .thenByDescending { dataset.updated(it) }
+                .thenBy { dataset.id(it) })
+            return EarthquakeQueryIndex(
+                dataset,
+                newestFirst,
+                LongArray(dataset.size) { dataset.updated(newestFirst[it]) },
+                strongestFirst,
+                DoubleArray(dataset.size) { magnitudeKey(dataset, strongestFirst[it]) }
+            )
+        }
+
+        private fun sortedRows(size: Int, comparator: Comparator<Int>): IntArray {
+            val rows = Array(size) { it }
+            rows.sortWith(comparator)
+            return IntArray(size) { rows[it] }
+        }
+
+        private fun magnitudeKey(dataset: EarthquakeDataset, row: Int): Double =
+            dataset.magnitude(row).let { if (it.isNaN()) Double.NEGATIVE_INFINITY else it }
+
+        /** Length of the prefix of [keys], sorted descending, whose keys are at least [threshold]. */
+        private fun prefixAtLeast(keys: LongArray, threshold: Long): Int {
+            var low = 0
+            var high = keys.size
+            while (low < high) {
+                val mid = (low + high) ushr 1
+                if (keys[mid] >= threshold) low = mid + 1 else high = mid
+            }
+            return low
+        }
+
+        private fun prefixAtLeast(keys: DoubleArray, threshold: Double): Int {
+            var low = 0
+            var high = keys.size
+            while (low < high) {
+                val mid = (low + high) ushr 1
+                if (keys[mid] >= threshold) low = mid + 1 else high = mid
+            }
+            return low
+        }
+    }
+
+    private val timeRanks = ranksOf(newestFirst)
+    private val magnitudeRanks = ranksOf(strongestFirst)
+
+    private fun ranksOf(order: IntArray): IntArray {
+        val ranks = IntArray(order.size)
+        for (rank in order.indices) ranks[order[rank]] = rank
+        return ranks
+    }
+
+    /**
+     * @param relativePositions distances for [EarthquakeQuery.Sort.DISTANCE], rows it does not know come last.
+     */
+    @WorkerThread
+    fun query(query: EarthquakeQuery, nowMillis: Long, relativePositions: RelativePositions? = null): EarthquakeQueryResult {
+        val cutoffMillis = query.cutoffMillis(nowMillis)
+        val minMagnitude = query.minMagnitude
+        val recentCount = prefixAtLeast(updatedDescending, cutoffMillis)
+        val strongCount = if (minMagnitude == null) dataset.size else prefixAtLeast(magnitudesDescending, minMagnitude)
+
+        // walk the shorter prefix and check the other threshold row by row
+        val byTime = recentCount <= strongCount
+        val ranks = if (byTime) {
+            collectRanks(newestFirst, recentCount, if (query.sort == EarthquakeQuery.Sort.MAGNITUDE) magnitudeRanks else null) {
+                minMagnitude == null || dataset.magnitude(it) >= minMagnitude
+            }
+        } else {
+            collectRanks(strongestFirst, strongCount, if (query.sort == EarthquakeQuery.Sort.TIME) timeRanks else null) {
+                dataset.updated(it) >= cutoffMillis
+            }
+        }
+
+        val rows = when (query.sort) {
+            EarthquakeQuery.Sort.TIME -> rowsOf(ranks, newestFirst, sort = !byTime)
+            EarthquakeQuery.Sort.MAGNITUDE -> rowsOf(ranks, strongestFirst, sort = byTime)
+            EarthquakeQuery.Sort.DISTANCE -> sortByDistance(rowsOf(ranks, if (byTime) newestFirst else strongestFirst, sort = false), relativePositions)
+        }
+        return EarthquakeQueryResult(query, dataset, rows)
+    }
+
+    /**
+     * @param toRanks converts the matching rows to ranks of another order, null keeps the walked order's ranks.
+     */
+    private inline fun collectRanks(order: IntArray, count: Int, toRanks: IntArray?, accept: (Int) -> Boolean): IntArray {
+        val ranks = IntArray(count)
+        var size = 0
+        for (rank in 0 until count) {
+            val row = order[rank]
+            if (accept(row)) ranks[size++] = if (toRanks != null) toRanks[row] else rank
+        }
+        return ranks.copyOf(size)
+    }
+
+    private fun rowsOf(ranks: IntArray, order: IntArray, sort: Boolean): IntArray {
+        if (sort) ranks.sort()
+        for (i in ranks.indices) ranks[i] = order[ranks[i]]
+        return ranks
+    }
+
+    /**
+     * Nearest first, ties newest first. Distance and time rank are packed into one long, so the sort is over primitives.
+     */
+    private fun sortByDistance(rows: IntArray, relativePositions: RelativePositions?): IntArray {
+        val keys = LongArray(rows.size)
+        for (i in rows.indices) {
+            val row = rows[i]
+            val distance = distanceKm(row, relativePositions)
+            // the bits of non-negative floats sort like the floats, unknown distances last
+            val distanceBits = if (distance.isNaN()) Int.MAX_VALUE else distance.toBits()
+            keys[i] = (distanceBits.toLong() shl 32) or timeRanks[row].toLong()
+        }
+        keys.sort()
+        for (i in keys.indices) rows[i] = newestFirst[keys[i].toInt()]
+        return rows
+    }
+
+    private fun distanceKm(row: Int, relativePositions: RelativePositions?): Float {
+        if (relativePositions == null) return Float.NaN
+        if (relativePositions.dataset === dataset) return relativePositions.distanceKm(row)
+        val index = relativePositions.indexOf(dataset.id(row))
+        return if (index >= 0) relativePositions.distanceKm(index) else Float.NaN
+    }
+}
+
+/**
+ * Rows of a dataset that match [query], in its order. A view of the dataset, nothing is copied.
+ */
+class EarthquakeQueryResult internal constructor(
+    val query: EarthquakeQuery,
+    val dataset: EarthquakeDataset,
+    private val rows: IntArray
+) : AbstractList<Earthquake>(), RandomAccess {
+    companion object {
+        /**
+         * [EarthquakeQuery.ALL] of a dataset taken from the store, already newest first, without building an index.
+         */
+        fun all(dataset: EarthquakeDataset): EarthquakeQueryResult =
+            EarthquakeQueryResult(EarthquakeQuery.ALL, dataset, IntArray(dataset.size) { it })
+    }
+
+    override val size: Int
+        get() = rows.size
+
+    override fun get(index: Int): Earthquake = dataset[rows[index]]
+}
@@ -0,0 +1,87 @@
+package com.jjuncoder.sideproject.earthquake.sync
+
+import com.jjuncoder.sideproject.earthquake.EarthquakeDataLoader
+import com.jjuncoder.sideproject.earthquake.EarthquakeFeedCache
+import com.jjuncoder.sideproject.earthquake.FeedSpec
+import com.jjuncoder.sideproject.earthquake.HttpStatusException
+import com.jjuncoder.sideproject.earthquake.RetryPolicy
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import com.jjuncoder.sideproject.earthquake.parser.EarthquakeFeedParser
+import kotlinx.coroutines.CancellationException
+import java.io.IOException
+
+/**
+ * One background sync : loads [specs] and hands the merged entries to [store].
+ * Knows nothing about the scheduler, [EarthquakeSyncWorker] maps the [Report.outcome] to a WorkManager result,
+ * so a sync can run in a unit test against a local feed server with a fake [clock].
+ *
+ * Feeds are tried once, a failing sync is retried by the scheduler with its own backoff instead of holding the job.
+ */
+class EarthquakeSyncTask(
+    private val specs: Collection<FeedSpec>,
+    private val cache: EarthquakeFeedCache? = null,
+    private val parser: EarthquakeFeedParser? = null,
+    private val retryPolicy: RetryPolicy = RetryPolicy.NONE,
+    private val clock: () -> Long = System::currentTimeMillis,
+    private val store: suspend (List<Earthquake>) -> Unit
+) {
+    enum class Outcome {
+        SUCCESS,
+
+        /** Nothing was stored and trying again later may help : the network, a server error or the store failed. */
+        RETRY,
+
+        /** Every feed was rejected, e.g. 404, trying again will not help until the feeds change. */
+        FAILURE
+    }
+
+    /**
+     * @param entries new or updated entries written to the store, 0 when every feed was unchanged.
+     * @param failedFeeds feeds that failed, the entries of the others are still stored.
+     */
+    data class Report(
+        val startedAtMillis: Long,
+        val durationMillis: Long,
+        val entries: Int,
+        val feeds: Int,
+        val failedFeeds: Int,
+        val outcome: Outcome,
+        val error: String? = null
+    )
+
+    /**
+     * @param reparseUnchanged whether feeds the [cache] reports as unchanged are stored again, e.g. after the store was cleared.
+     */
+    suspend fun run(reparseUnchanged: Boolean = false): Report {
+        val startedAtMillis = clock()
+        val result = EarthquakeDataLoader.loadFeeds(
+            specs,
+            cache = cache,
+            reparseUnchanged = reparseUnchanged,
+            parser = parser,
+            retryPolicy = retryPolicy
+        )
+        val errors = result.feeds.mapNotNull { it.error }
+
+        fun report(entries: Int, outcome: Outcome, error: Throwable? = errors.firstOrNull()) =
+            Report(startedAtMillis, clock() - startedAtMillis, entries, result.feeds.size, errors.size, outcome, error?.toString())
+
+        if (errors.isNotEmpty() && errors.size == result.feeds.size) {
+            return report(0, if (errors.any { isTransient(it) }) Outcome.RETRY else Outcome.FAILURE)
+        }
+        if (result.earthquakes.isNotEmpty()) {
+            try {
+                store(result.earthquakes)
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                // e.g. the database is locked by a migration, the feeds are downloaded again next time
+                return report(0, Outcome.RETRY, e)
+            }
+        }
+        return report(result.earthquakes.size, Outcome.SUCCESS)
+    }
+
+    private fun isTransient(error: Exception): Boolean =
+        error is IOException && (error !is HttpStatusException || error.isRetryable)
+}
@@ -0,0 +1,117 @@
+package com.jjuncoder.sideproject.earthquake.sync
+
+import android.content.Context
+import android.util.Log
+import androidx.core.content.edit
+import androidx.work.BackoffPolicy
+import androidx.work.Constraints
+import androidx.work.CoroutineWorker
+import androidx.work.ExistingPeriodicWorkPolicy
+import androidx.work.NetworkType
+import androidx.work.PeriodicWorkRequestBuilder
+import androidx.work.WorkManager
+import androidx.work.WorkerParameters
+import com.jjuncoder.sideproject.earthquake.EarthquakeFeedCache
+import com.jjuncoder.sideproject.earthquake.db.EarthquakeDatabase
+import com.jjuncoder.sideproject.earthquake.db.EarthquakeEntity
+import com.jjuncoder.sideproject.earthquake.viewmodel.EarthquakeViewModel
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+/**
+ * Periodic [EarthquakeSyncTask] into the local database, so the list is fresh when the app is opened.
+ *
+ * Runs only on a connected network with a battery that is not low. The flex interval lets WorkManager batch it
+ * with other apps' jobs anywhere in the last [FLEX_MINUTES] of each period instead of waking the device for it alone,
+ * and the unique name keeps a single schedule however often [schedule] is called.
+ */
+class EarthquakeSyncWorker(context: Context, parameters: WorkerParameters) : CoroutineWorker(context, parameters) {
+    companion object {
+        const val TAG = "EarthquakeSyncWorker"
+        const val UNIQUE_NAME = "earthquake_sync"
+        private const val REPEAT_HOURS = 1L
+        private const val FLEX_MINUTES = 20L
+        private const val BACKOFF_MINUTES = 5L
+        // later failures wait for the next period, the backoff would only grow past it
+        private const val MAX_RUN_ATTEMPTS = 4
+
+        private const val PREFERENCES = "earthquake_sync"
+        private const val KEY_STARTED_AT = "started_at"
+        private const val KEY_DURATION = "duration_millis"
+        private const val KEY_ENTRIES = "entries"
+        private const val KEY_FEEDS = "feeds"
+        private const val KEY_FAILED_FEEDS = "failed_feeds"
+        private const val KEY_OUTCOME = "outcome"
+        private const val KEY_ERROR = "error"
+
+        /**
+         * Keeps the existing schedule when there is one, so calling it on every start does not push the next sync back.
+         */
+        fun schedule(context: Context) {
+            val constraints = Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .setRequiresBatteryNotLow(true)
+                .build()
+            val request = PeriodicWorkRequestBuilder<EarthquakeSyncWorker>(REPEAT_HOURS, TimeUnit.HOURS, FLEX_MINUTES, TimeUnit.MINUTES)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_MINUTES, TimeUnit.MINUTES)
+                .build()
+            WorkManager.getInstance(context).enqueueUniquePeriodicWork(UNIQUE_NAME, ExistingPeriodicWorkPolicy.KEEP, request)
+        }
+
+        /**
+         * @return the report of the last sync, null before the first one.
+         */
+        fun lastReport(context: Context): EarthquakeSyncTask.Report? {
+            val preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE)
+            if (!preferences.contains(KEY_STARTED_AT)) return null
+            return EarthquakeSyncTask.Report(
+                preferences.getLong(KEY_STARTED_AT, 0),
+                preferences.getLong(KEY_DURATION, 0),
+                preferences.getInt(KEY_ENTRIES, 0),
+                preferences.getInt(KEY_FEEDS, 0),
+                preferences.getInt(KEY_FAILED_FEEDS, 0),
+                EarthquakeSyncTask.Outcome.valueOf(preferences.getString(KEY_OUTCOME, null) ?: EarthquakeSyncTask.Outcome.SUCCESS.name),
+                preferences.getString(KEY_ERROR, null)
+            )
+        }
+
+        private fun record(context: Context, report: EarthquakeSyncTask.Report) {
+            context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE).edit {
+                putLong(KEY_STARTED_AT, report.startedAtMillis)
+                putLong(KEY_DURATION, report.durationMillis)
+                putInt(KEY_ENTRIES, report.entries)
+                putInt(KEY_FEEDS, report.feeds)
+                putInt(KEY_FAILED_FEEDS, report.failedFeeds)
+                putString(KEY_OUTCOME, report.outcome.name)
+                putString(KEY_ERROR, report.error)
+            }
+        }
+    }
+
+    override suspend fun doWork(): Result {
+        val dao = EarthquakeDatabase.getInstance(applicationContext).earthquakeDao()
+        val task = EarthquakeSyncTask(
+            EarthquakeViewModel.DEFAULT_FEEDS,
+            // not the list's cache, the two may revalidate the same feed at the same time
+            cache = EarthquakeFeedCache(File(applicationContext.cacheDir, "earthquake_sync_feed"))
+        ) { earthquakes ->
+            withContext(Dispatchers.IO) {
+                dao.upsertAll(earthquakes.map { EarthquakeEntity.from(it) })
+            }
+        }
+        // the cache already holds the bodies a failed attempt could not store, and an empty store needs every entry
+        val report = task.run(reparseUnchanged = runAttemptCount > 0 || dao.count() == 0)
+        Log.i(TAG, "sync : ${report.entries} entries from ${report.feeds - report.failedFeeds}/${report.feeds} feeds " +
+            "in ${report.durationMillis} ms, ${report.outcome}, attempt $runAttemptCount${report.error?.let { ", $it" } ?: ""}")
+        record(applicationContext, report)
+
+        return when (report.outcome) {
+            EarthquakeSyncTask.Outcome.SUCCESS -> Result.success()
+            EarthquakeSyncTask.Outcome.RETRY -> if (runAttemptCount + 1 < MAX_RUN_ATTEMPTS) Result.retry() else Result.failure()
+            EarthquakeSyncTask.Outcome.FAILURE -> Result.failure()
+        }
+    }
+}
@@ -1,33 +1,66 @@
 package com.jjuncoder.sideproject.earthquake.view
 
+import android.Manifest
+import android.annotation.SuppressLint
 import android.content.Context
 import android.content.Intent
-import android.graphics.Bitmap
-import android.graphics.Canvas
-import android.graphics.Color
+import android.content.pm.PackageManager
+import android.location.Location
+import android.location.LocationListener
+import android.location.LocationManager
 import android.media.MediaScannerConnection
 import android.net.Uri
 import android.os.Bundle
 import android.os.Environment
 import android.util.Log
+import android.view.Menu
 import android.view.View
+import android.widget.PopupMenu
 import android.widget.Toast
+import androidx.activity.result.contract.ActivityResultContracts
 import androidx.activity.viewModels
 import androidx.appcompat.app.AppCompatActivity
+import androidx.core.content.ContextCompat
 import androidx.core.content.ContextCompat.startActivity
+import androidx.lifecycle.lifecycleScope
 import androidx.recyclerview.widget.LinearLayoutManager
+import com.jjuncoder.sideproject.R
 import com.jjuncoder.sideproject.databinding.ActivityEarthQuakeBinding
-import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import com.jjuncoder.sideproject.earthquake.capture.CapturePipeline
+import com.jjuncoder.sideproject.earthquake.query.EarthquakeQuery
+import com.jjuncoder.sideproject.earthquake.sync.EarthquakeSyncWorker
 import com.jjuncoder.sideproject.earthquake.viewmodel.EarthquakeViewModel
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
 import java.io.File
-import java.io.FileOutputStream
 import java.io.IOException
-import java.util.*
+import java.util.concurrent.TimeUnit
 
 
 class EarthQuakeActivity : AppCompatActivity() {
     companion object {
         const val LOG_TAG = "EarthQuakeActivity"
+        private const val LOCATION_MIN_TIME_MILLIS = 60_000L
+        private const val LOCATION_MIN_DISTANCE_METERS = 500f
+        private val CAPTURE_OPTIONS = CapturePipeline.Options(CapturePipeline.Format.PNG)
+
+        private val QUERY_SORTS = mapOf(
+            R.id.query_sort_time to EarthquakeQuery.Sort.TIME,
+            R.id.query_sort_magnitude to EarthquakeQuery.Sort.MAGNITUDE,
+            R.id.query_sort_distance to EarthquakeQuery.Sort.DISTANCE
+        )
+        private val QUERY_MAGNITUDES = mapOf(
+            R.id.query_magnitude_all to null,
+            R.id.query_magnitude_2_5 to 2.5,
+            R.id.query_magnitude_4_5 to 4.5
+        )
+        private val QUERY_WINDOWS = mapOf(
+            R.id.query_window_all to null,
+            R.id.query_window_day to TimeUnit.DAYS.toMillis(1),
+            R.id.query_window_week to TimeUnit.DAYS.toMillis(7)
+        )
 
         fun startEarthQuakeActivity(context: Context) {
             val intent = Intent(context, EarthQuakeActivity::class.java)
@@ -38,7 +71,24 @@ class EarthQuakeActivity : AppCompatActivity() {
     lateinit var binding: ActivityEarthQuakeBinding
     private val viewModel: EarthquakeViewModel by viewModels()
 
-    private val earthquakes: ArrayList<Earthquake> = arrayListOf()
+    private val earthquakeAdapter by lazy { EarthquakeRecyclerViewAdapter(viewModel.rowTexts) }
+    private val capturePipeline = CapturePipeline()
+    private var captureJob: Job? = null
+
+    private val locationManager by lazy { getSystemService(Context.LOCATION_SERVICE) as LocationManager }
+    private val locationListener = object : LocationListener {
+        override fun onLocationChanged(location: Location) {
+            viewModel.onDeviceLocation(location.latitude, location.longitude)
+        }
+
+        override fun onStatusChanged(provider: String?, status: Int, extras: Bundle?) {}
+        override fun onProviderEnabled(provider: String) {}
+        override fun onProviderDisabled(provider: String) {}
+    }
+
+    private val locationPermissionRequest = registerForActivityResult(ActivityResultContracts.RequestPermission()) { isGranted ->
+        if (isGranted) startLocationUpdates()
+    }
 
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
@@ -47,12 +97,43 @@ class EarthQuakeActivity : AppCompatActivity() {
         setContentView(binding.root)
         initObserver()
         initView()
+        if (!hasLocationPermission()) {
+            locationPermissionRequest.launch(Manifest.permission.ACCESS_COARSE_LOCATION)
+        }
+        EarthquakeSyncWorker.schedule(applicationContext)
+    }
+
+    override fun onStart() {
+        super.onStart()
+        if (hasLocationPermission()) startLocationUpdates()
+    }
+
+    override fun onStop() {
+        super.onStop()
+        locationManager.removeUpdates(locationListener)
+    }
+
+    private fun hasLocationPermission(): Boolean =
+        ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION) == PackageManager.PERMISSION_GRANTED
+
+    @SuppressLint("MissingPermission")
+    private fun startLocationUpdates() {
+        if (!locationManager.isProviderEnabled(LocationManager.NETWORK_PROVIDER)) return
+        locationManager.getLastKnownLocation(LocationManager.NETWORK_PROVIDER)?.let {
+            viewModel.onDeviceLocation(it.latitude, it.longitude)
+        }
+        locationManager.requestLocationUpdates(
+            LocationManager.NETWORK_PROVIDER,
+            LOCATION_MIN_TIME_MILLIS,
+            LOCATION_MIN_DISTANCE_METERS,
+            locationListener
+        )
     }
 
     private fun initView() {
         binding.eqRecyclerView.apply {
             layoutManager = LinearLayoutManager(this@EarthQuakeActivity)
-            adapter = EarthquakeRecyclerViewAdapter(earthquakes)
+            adapter = earthquakeAdapter
         }
         binding.swipeRefreshView.setOnRefreshListener {
             viewModel.updateEarthquakeData()
@@ -60,77 +141,98 @@ class EarthQuakeActivity : AppCompatActivity() {
         binding.captureButton.setOnClickListener {
             captureListViewToImageAndSend()
         }
+        binding.queryButton.setOnClickListener {
+            showQueryMenu(it)
+        }
+    }
+
+    private fun showQueryMenu(anchor: View) {
+        val query = viewModel.query
+        PopupMenu(this, anchor).apply {
+            inflate(R.menu.earthquake_query)
+            menu.check(QUERY_SORTS, query.sort)
+            menu.check(QUERY_MAGNITUDES, query.minMagnitude)
+            menu.check(QUERY_WINDOWS, query.windowMillis)
+            setOnMenuItemClickListener { item ->
+                val id = item.itemId
+                viewModel.query = when (id) {
+                    in QUERY_SORTS -> query.copy(sort = QUERY_SORTS.getValue(id))
+                    in QUERY_MAGNITUDES -> query.copy(minMagnitude = QUERY_MAGNITUDES[id])
+                    in QUERY_WINDOWS -> query.copy(windowMillis = QUERY_WINDOWS[id])
+                    else -> return@setOnMenuItemClickListener false
+                }
+                true
+            }
+            show()
+        }
+    }
+
+    private fun <T> Menu.check(items: Map<Int, T>, value: T) {
+        items.entries.firstOrNull { it.value == value }?.let { findItem(it.key).isChecked = true }
     }
 
     private fun initObserver() {
+        viewModel.earthquakeChanges.observe(this) {
+            Log.d(LOG_TAG, "viewModel earthquake changes : ${it.inserted.size} inserted, ${it.updated.size} updated, ${it.removed.size} removed")
+            earthquakeAdapter.submitChanges(it) { viewModel.earthquakeSnapshot() }
+        }
+        viewModel.isRefreshing.observe(this) {
+            binding.swipeRefreshView.isRefreshing = it
+        }
         viewModel.earthquake.observe(this) {
-            Log.d(LOG_TAG, "viewModel earthquake list : $it")
-            updateEarthquakeList(it)
+            binding.mapView.dataset = it
+        }
+        viewModel.relativePositions.observe(this) {
+            earthquakeAdapter.relativePositions = it
+        }
+        viewModel.queryResult.observe(this) {
+            Log.d(LOG_TAG, "viewModel query result : ${it.size} of ${it.dataset.size} for ${it.query}")
+            earthquakeAdapter.submitQueryResult(it) { viewModel.earthquakeSnapshot() }
         }
     }
 
-    private fun updateEarthquakeList(updateList: List<Earthquake>) {
-        for (eq in updateList) {
-            if (earthquakes.contains(eq) == false) {
-                earthquakes.add(eq)
-                binding.eqRecyclerView.adapter?.notifyItemInserted(earthquakes.indexOf(eq))
+    private fun captureListViewToImageAndSend() {
+        if (captureJob?.isActive == true || earthquakeAdapter.itemCount == 0) return
+        binding.captureButton.isEnabled = false
+        captureJob = lifecycleScope.launch {
+            try {
+                val pictureFile = withContext(Dispatchers.IO) { createPictureFile(CAPTURE_OPTIONS.format) } ?: return@launch
+                // every row of the list, not only the visible ones. Encoded and written off the main thread
+                val report = capturePipeline.capture(binding.eqRecyclerView, pictureFile, CAPTURE_OPTIONS)
+                Log.i("EarthQuakeActivity", "captured $report")
+                scanGallery(this@EarthQuakeActivity, report.file.absolutePath)
+                share(report)
+            } catch (e: IOException) {
+                e.printStackTrace()
+                Log.i("EarthQuakeActivity", "There was an issue saving the image.")
+            } catch (e: IllegalStateException) {
+                Log.i("EarthQuakeActivity", "Can't capture the list : ${e.message}")
+            } finally {
+                binding.captureButton.isEnabled = true
             }
         }
-        binding.swipeRefreshView.isRefreshing = false
     }
 
-    private fun captureListViewToImageAndSend() {
-        val pictureFile = saveBitMap(this, binding.eqRecyclerView)
-        val outputUri = Uri.fromFile(pictureFile)
+    private fun share(report: CapturePipeline.Report) {
+        val outputUri = Uri.fromFile(report.file)
         Log.i("EarthQuakeActivity", "outputUri : $outputUri")
-        val intent = Intent(Intent.ACTION_SEND_MULTIPLE).apply {
-            type = "*/*"
+        val intent = Intent(Intent.ACTION_SEND).apply {
+            type = report.format.mimeType
             putExtra(Intent.EXTRA_STREAM, outputUri)
         }
         startActivity(Intent.createChooser(intent, "공유 테스트"))
     }
 
-    private fun saveBitMap(context: Context, drawView: View): File? {
+    private fun createPictureFile(format: CapturePipeline.Format): File? {
         val externalFileDir = getExternalFilesDir(Environment.DIRECTORY_PICTURES)
         Log.i("EarthQuakeActivity", "externalFileDir : $externalFileDir")
 
         val pictureFileDir = File(externalFileDir, "sideproject")
-        if (!pictureFileDir.exists()) {
-            val isDirectoryCreated: Boolean = pictureFileDir.mkdirs()
-            if (!isDirectoryCreated) Log.i("EarthQuakeActivity", "Can't create directory to save the image")
+        if (!pictureFileDir.exists() && !pictureFileDir.mkdirs()) {
+            Log.i("EarthQuakeActivity", "Can't create directory to save the image")
             return null
         }
-
-        val filename: String = pictureFileDir.path + File.separator + System.currentTimeMillis().toString() + ".jpg"
-        val pictureFile = File(filename)
-        val bitmap = getBitmapFromView(drawView)
-        try {
-            pictureFile.createNewFile()
-            FileOutputStream(pictureFile).use {
-                bitmap!!.compress(Bitmap.CompressFormat.PNG, 100, it)
-                it.flush()
-            }
-        } catch (e: IOException) {
-            e.printStackTrace()
-            Log.i("EarthQuakeActivity", "There was an issue saving the image.")
-        }
-
-        scanGallery(context, pictureFile.absolutePath)
-        return pictureFile
-    }
-
-    private fun getBitmapFromView(view: View): Bitmap? {
-        Log.i("EarthQuakeActivity", "view width : ${view.width} , height : ${view.height}")
-        //Define a bitmap with the same size as the view
-        val returnedBitmap = Bitmap.createBitmap(view.width, view.height, Bitmap.Config.ARGB_8888)
-        //Bind a canvas to it
-        val canvas = Canvas(returnedBitmap)
-        //Draw the view's background
-        view.background?.draw(canvas) ?: canvas.drawColor(Color.WHITE)
-        // draw the view on the canvas
-        view.draw(canvas)
-        //return the bitmap
-        return returnedBitmap
+        return File(pictureFileDir, System.currentTimeMillis().toString() + "." + format.extension)
     }
 
     private fun scanGallery(context: Context, path: String) {
@@ -0,0 +1,224 @@
+package com.jjuncoder.sideproject.earthquake.view
+
+import android.content.Context
+import android.graphics.Canvas
+import android.graphics.Color
+import android.graphics.Paint
+import android.util.AttributeSet
+import android.view.GestureDetector
+import android.view.MotionEvent
+import android.view.ScaleGestureDetector
+import android.view.View
+import com.jjuncoder.sideproject.earthquake.geo.EarthquakeClusters
+import com.jjuncoder.sideproject.earthquake.model.EarthquakeDataset
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.MainScope
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import kotlin.math.ceil
+import kotlin.math.floor
+import kotlin.math.ln
+import kotlin.math.pow
+import kotlin.math.sqrt
+
+/**
+ * Overview of the earthquakes on an equirectangular world map, panned by dragging and zoomed by pinching.
+ * Events are drawn as one circle per cell of a grid of about [CELL_DP] on screen, sized by the number of events
+ * and colored by the strongest one. The grid only changes with the zoom level bucket, a power of two,
+ * so it is clustered again on a background thread when the bucket changes and panning just draws the same clusters.
+ */
+class EarthquakeMapView @JvmOverloads constructor(
+    context: Context,
+    attributeSet: AttributeSet? = null,
+    defStyleAttr: Int = 0
+) : View(context, attributeSet, defStyleAttr) {
+
+    companion object {
+        private const val CELL_DP = 32
+        private const val MAX_ZOOM = 64f
+        private const val MIN_RADIUS_DP = 3
+        private const val GRATICULE_DEGREES = 30
+
+        /** Fill of a cluster whose strongest event is below 2.5, 4.5, 6.0 and above. */
+        private val MAGNITUDE_COLORS = intArrayOf(0xA0FBC02D.toInt(), 0xB0FB8C00.toInt(), 0xC0E53935.toInt(), 0xD0880E4F.toInt())
+    }
+
+    var dataset: EarthquakeDataset = EarthquakeDataset.EMPTY
+        set(value) {
+            if (field === value) return
+            field = value
+            cluster()
+        }
+
+    private val density = resources.displayMetrics.density
+    private val cellPx = CELL_DP * density
+    private val minRadiusPx = MIN_RADIUS_DP * density
+
+    private var clusters = EarthquakeClusters.EMPTY
+    private var labels = emptyArray<String>()
+    private var clusterBucket = -1
+    private var clusterWidth = 0
+    private var clusterJob: Job? = null
+    private var scope: CoroutineScope? = null
+
+    /** 1 shows the whole world across the view. */
+    private var zoom = 1f
+    private var centerX = 0.5f
+    private var centerY = 0.5f
+
+    private val clusterPaint = Paint(Paint.ANTI_ALIAS_FLAG)
+    private val labelPaint = Paint(Paint.ANTI_ALIAS_FLAG).apply {
+        color = Color.WHITE
+        textAlign = Paint.Align.CENTER
+        textSize = 11 * density
+    }
+    private val gridPaint = Paint().apply {
+        color = 0x40808080
+        strokeWidth = density
+    }
+
+    private val scaleDetector = ScaleGestureDetector(context, object : ScaleGestureDetector.SimpleOnScaleGestureListener() {
+        override fun onScale(detector: ScaleGestureDetector): Boolean {
+            zoomBy(detector.scaleFactor, detector.focusX, detector.focusY)
+            return true
+        }
+    })
+
+    private val gestureDetector = GestureDetector(context, object : GestureDetector.SimpleOnGestureListener() {
+        override fun onDown(e: MotionEvent): Boolean = true
+
+        override fun onScroll(e1: MotionEvent?, e2: MotionEvent, distanceX: Float, distanceY: Float): Boolean {
+            centerX += distanceX / worldWidth
+            centerY += distanceY / worldHeight
+            clampCenter()
+            invalidate()
+            return true
+        }
+
+        override fun onDoubleTap(e: MotionEvent): Boolean {
+            zoomBy(2f, e.x, e.y)
+            return true
+        }
+    })
+
+    private val worldWidth: Float
+        get() = width * zoom
+
+    // equirectangular, the world is twice as wide as it is high
+    private val worldHeight: Float
+        get() = worldWidth / 2
+
+    private val zoomBucket: Int
+        get() = floor(ln(zoom.toDouble()) / ln(2.0) + 1e-6).toInt()
+
+    private fun zoomBy(factor: Float, focusX: Float, focusY: Float) {
+        // keep the world point under the focus where it is
+        val worldX = centerX + (focusX - width / 2f) / worldWidth
+        val worldY = centerY + (focusY - height / 2f) / worldHeight
+        zoom = (zoom * factor).coerceIn(1f, MAX_ZOOM)
+        centerX = worldX - (focusX - width / 2f) / worldWidth
+        centerY = worldY - (focusY - height / 2f) / worldHeight
+        clampCenter()
+        if (zoomBucket != clusterBucket) cluster()
+        invalidate()
+    }
+
+    private fun clampCenter() {
+        val halfWidth = width / 2f / worldWidth
+        val halfHeight = height / 2f / worldHeight
+        centerX = if (halfWidth >= 0.5f) 0.5f else centerX.coerceIn(halfWidth, 1 - halfWidth)
+        centerY = if (halfHeight >= 0.5f) 0.5f else centerY.coerceIn(halfHeight, 1 - halfHeight)
+    }
+
+    override fun onTouchEvent(event: MotionEvent): Boolean {
+        scaleDetector.onTouchEvent(event)
+        if (!scaleDetector.isInProgress) gestureDetector.onTouchEvent(event)
+        return true
+    }
+
+    override fun onAttachedToWindow() {
+        super.onAttachedToWindow()
+        scope = MainScope()
+        cluster()
+    }
+
+    override fun onDetachedFromWindow() {
+        scope?.cancel()
+        scope = null
+        // a new scope clusters again once attached
+        clusterBucket = -1
+        super.onDetachedFromWindow()
+    }
+
+    override fun onSizeChanged(w: Int, h: Int, oldw: Int, oldh: Int) {
+        clampCenter()
+        if (w != clusterWidth) cluster()
+    }
+
+    private fun cluster() {
+        val scope = scope ?: return
+        if (width == 0) return
+        val dataset = dataset
+        val bucket = zoomBucket
+        // cells of about CELL_DP on screen at the bucket's zoom, it only grows by up to twice before the next bucket
+        val columns = maxOf(2, ceil(width * 2.0.pow(bucket) / cellPx).toInt() and 1.inv())
+        clusterBucket = bucket
+        clusterWidth = width
+        clusterJob?.cancel()
+        clusterJob = scope.launch {
+            val (clusters, labels) = withContext(Dispatchers.Default) {
+                val clusters = EarthquakeClusters.cluster(dataset, columns)
+                clusters to Array(clusters.size) { clusters.count(it).toString() }
+            }
+            this@EarthquakeMapView.clusters = clusters
+            this@EarthquakeMapView.labels = labels
+            invalidate()
+        }
+    }
+
+    override fun onDraw(canvas: Canvas) {
+        val worldWidth = worldWidth
+        val worldHeight = worldHeight
+        val left = width / 2f - centerX * worldWidth
+        val top = height / 2f - centerY * worldHeight
+        drawGraticule(canvas, left, top, worldWidth, worldHeight)
+
+        val clusters = clusters
+        val labels = labels
+        val cellSize = worldWidth / clusters.columns
+        val maxRadius = cellSize * 0.75f
+        val labelOffset = (labelPaint.descent() + labelPaint.ascent()) / 2
+        for (i in 0 until clusters.size) {
+            val x = left + clusters.x(i) * worldWidth
+            val y = top + clusters.y(i) * worldHeight
+            val count = clusters.count(i)
+            val radius = minOf(maxRadius, minRadiusPx + sqrt(count.toFloat()) * minRadiusPx)
+            if (x + radius < 0 || x - radius > width || y + radius < 0 || y - radius > height) continue
+
+            clusterPaint.color = colorOf(clusters.maxMagnitude(i))
+            canvas.drawCircle(x, y, radius, clusterPaint)
+            if (count > 1 && radius > labelPaint.textSize) canvas.drawText(labels[i], x, y - labelOffset, labelPaint)
+        }
+    }
+
+    private fun drawGraticule(canvas: Canvas, left: Float, top: Float, worldWidth: Float, worldHeight: Float) {
+        for (longitude in -180..180 step GRATICULE_DEGREES) {
+            val x = left + (longitude + 180) / 360f * worldWidth
+            canvas.drawLine(x, top, x, top + worldHeight, gridPaint)
+        }
+        for (latitude in -90..90 step GRATICULE_DEGREES) {
+            val y = top + (90 - latitude) / 180f * worldHeight
+            canvas.drawLine(left, y, left + worldWidth, y, gridPaint)
+        }
+    }
+
+    private fun colorOf(magnitude: Float): Int = when {
+        magnitude.isNaN() || magnitude < 2.5f -> MAGNITUDE_COLORS[0]
+        magnitude < 4.5f -> MAGNITUDE_COLORS[1]
+        magnitude < 6f -> MAGNITUDE_COLORS[2]
+        else -> MAGNITUDE_COLORS[3]
+    }
+}
@@ -1,40 +1,150 @@
 package com.jjuncoder.sideproject.earthquake.view
 
-import android.view.LayoutInflater
 import android.view.ViewGroup
 import androidx.recyclerview.widget.RecyclerView
-import com.jjuncoder.sideproject.databinding.ListItemEarthquakeBinding
+import com.jjuncoder.sideproject.earthquake.geo.RelativePositions
 import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import com.jjuncoder.sideproject.earthquake.model.EarthquakeStore
+import com.jjuncoder.sideproject.earthquake.model.SortedEarthquakeList
+import com.jjuncoder.sideproject.earthquake.query.EarthquakeQuery
+import com.jjuncoder.sideproject.earthquake.query.EarthquakeQueryResult
+import com.jjuncoder.sideproject.earthquake.viewmodel.EarthquakeRowTexts
 import java.text.DecimalFormat
-import java.text.SimpleDateFormat
-import java.util.*
 
-class EarthquakeRecyclerViewAdapter(private val list: List<Earthquake>) :
-    RecyclerView.Adapter<ViewHolder>() {
+/**
+ * Mirrors the [EarthquakeStore] of the ViewModel. Its change sets are applied row by row
+ * and turned into insert / change / move / remove notifications, nothing is diffed.
+ * While a query other than [EarthquakeQuery.ALL] is submitted, its result is shown instead and change sets are ignored.
+ */
+class EarthquakeRecyclerViewAdapter(private val rowTexts: EarthquakeRowTexts) : RecyclerView.Adapter<ViewHolder>() {
 
+    companion object {
+        private val PAYLOAD_RELATIVE_POSITION = Any()
+
+        /** Above this many changes in one set, rebinding everything is cheaper than notifying row by row. */
+        private const val MAX_ROW_NOTIFICATIONS = 100
+    }
+
+    private val earthquakes = SortedEarthquakeList()
+    private var version = -1L
+    private var queryResult: EarthquakeQueryResult? = null
+
+    /**
+     * Rebinds only the distance of the visible rows when it changes.
+     */
+    var relativePositions: RelativePositions? = null
+        set(value) {
+            field = value
+            notifyItemRangeChanged(0, itemCount, PAYLOAD_RELATIVE_POSITION)
+        }
+
+    /**
+     * @param snapshot the whole store, only read when a change set was missed, e.g. while the activity was stopped,
+     * or when the set is too large to notify row by row.
+     */
+    fun submitChanges(changes: EarthquakeStore.ChangeSet, snapshot: () -> List<Earthquake>) {
+        if (queryResult != null) {
+            // the query result follows the store on its own, the mirror is rebuilt once the query is cleared
+            version = -1L
+            return
+        }
+        if (changes.fromVersion != version || changes.size > MAX_ROW_NOTIFICATIONS) {
+            earthquakes.replaceAll(snapshot())
+            notifyDataSetChanged()
+        } else {
+            notifyRemoved(changes.removed)
+            changes.updated.forEach { (previous, current) ->
+                val from = earthquakes.delete(previous)
+                val to = earthquakes.insert(current)
+                if (from != to) notifyItemMoved(from, to)
+                notifyItemChanged(to)
+            }
+            changes.inserted.forEach { notifyItemInserted(earthquakes.insert(it)) }
+        }
+        version = changes.toVersion
+    }
+
+    /**
+     * @param snapshot the whole store, read when [EarthquakeQuery.ALL] replaces a filtered result.
+     */
+    fun submitQueryResult(result: EarthquakeQueryResult, snapshot: () -> List<Earthquake>) {
+        if (result.query == EarthquakeQuery.ALL) {
+            if (queryResult == null) return
+            queryResult = null
+            earthquakes.replaceAll(snapshot())
+        } else {
+            queryResult = result
+        }
+        notifyDataSetChanged()
+    }
+
+    private fun earthquakeAt(position: Int): Earthquake = queryResult?.get(position) ?: earthquakes[position]
+
+    /**
+     * Evicted rows are adjacent, they are notified as ranges instead of one by one.
+     */
+    private fun notifyRemoved(removed: List<Earthquake>) {
+        var rangeStart = -1
+        var rangeCount = 0
+        removed.forEach {
+            val position = earthquakes.delete(it)
+            when {
+                // the next row moved up into the same position
+                rangeCount > 0 && position == rangeStart -> rangeCount++
+                rangeCount > 0 && position == rangeStart - 1 -> {
+                    rangeStart = position
+                    rangeCount++
+                }
+                else -> {
+                    if (rangeCount > 0) notifyItemRangeRemoved(rangeStart, rangeCount)
+                    rangeStart = position
+                    rangeCount = 1
+                }
+            }
+        }
+        if (rangeCount > 0) notifyItemRangeRemoved(rangeStart, rangeCount)
+    }
+
+    override fun getItemCount(): Int = queryResult?.size ?: earthquakes.size
 
     override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): ViewHolder {
-        val binding = ListItemEarthquakeBinding.inflate(LayoutInflater.from(parent.context), parent, false)
-        return ViewHolder(binding)
+        val rowView = EarthquakeRowView(parent.context).apply {
+            layoutParams = RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT)
+        }
+        return ViewHolder(rowView)
     }
 
     override fun onBindViewHolder(holder: ViewHolder, position: Int) {
-        holder.binding.earthquake = list[position]
-        holder.binding.executePendingBindings()
-
+        val earthquake = earthquakeAt(position)
+        // formatted when the row arrived, see EarthquakeRowTexts
+        holder.rowView.bind(rowTexts[earthquake], earthquake.details)
+        holder.bindRelativePosition(relativePositions, earthquake)
     }
 
-    override fun getItemCount(): Int = list.size
+    override fun onBindViewHolder(holder: ViewHolder, position: Int, payloads: MutableList<Any>) {
+        if (payloads.isNotEmpty() && payloads.all { it === PAYLOAD_RELATIVE_POSITION }) {
+            holder.bindRelativePosition(relativePositions, earthquakeAt(position))
+        } else {
+            super.onBindViewHolder(holder, position, payloads)
+        }
+    }
 }
 
-class ViewHolder(val binding: ListItemEarthquakeBinding) : RecyclerView.ViewHolder(binding.root) {
-    init {
-        binding.timeFormat = TIME_FORMAT
-        binding.magnitudeFormat = MAGNITUDE_FORMAT
+class ViewHolder(val rowView: EarthquakeRowView) : RecyclerView.ViewHolder(rowView) {
+    companion object {
+        val DISTANCE_FORMAT = DecimalFormat("#,##0 km")
     }
 
-    companion object {
-        val TIME_FORMAT = SimpleDateFormat("HH:mm", Locale.KOREA)
-        val MAGNITUDE_FORMAT = DecimalFormat("0.0")
+    /**
+     * Rows that arrived after the positions were computed stay blank until the next computation.
+     */
+    fun bindRelativePosition(relativePositions: RelativePositions?, earthquake: Earthquake) {
+        val index = relativePositions?.indexOf(earthquake.id) ?: -1
+        rowView.distance = if (relativePositions != null && index >= 0) {
+            val distance = DISTANCE_FORMAT.format(relativePositions.distanceKm(index))
+            "$distance ${RelativePositions.compassPoint(relativePositions.bearingDegrees(index))}"
+        } else {
+            ""
+        }
     }
 }
@@ -0,0 +1,118 @@
+package com.jjuncoder.sideproject.earthquake.view
+
+import android.content.Context
+import android.graphics.Canvas
+import android.graphics.Paint
+import android.text.TextPaint
+import android.text.TextUtils
+import android.util.AttributeSet
+import android.util.TypedValue
+import android.view.View
+import android.view.accessibility.AccessibilityNodeInfo
+import com.jjuncoder.sideproject.R
+import com.jjuncoder.sideproject.earthquake.viewmodel.EarthquakeRowText
+
+/**
+ * One row of the earthquake list drawn by a single view: time and distance on the first line, details below,
+ * magnitude on the right. Looks like the former ConstraintLayout row, but has a fixed height,
+ * so binding never requests a layout, and every text is measured once per bind instead of once per layout pass.
+ * Details longer than one line are ellipsized.
+ */
+class EarthquakeRowView @JvmOverloads constructor(
+    context: Context,
+    attributeSet: AttributeSet? = null,
+    defStyleAttr: Int = 0
+) : View(context, attributeSet, defStyleAttr) {
+
+    private val bodyPaint = textPaint(android.R.attr.textAppearance)
+    private val magnitudePaint = textPaint(R.attr.textAppearanceListItem)
+    private val margin = resources.getDimensionPixelSize(R.dimen.text_margin)
+
+    // like TextView's includeFontPadding
+    private val bodyLineHeight = bodyPaint.fontMetricsInt.let { it.bottom - it.top }
+    private val timeBaseline = margin - bodyPaint.fontMetricsInt.top
+    private val detailsBaseline = timeBaseline + bodyLineHeight
+    private val rowHeight = margin + 2 * bodyLineHeight + margin
+
+    private var time = ""
+    private var magnitude = ""
+    private var magnitudeWidth = 0f
+    private var details = ""
+    private var distanceWidth = 0f
+
+    // ellipsized for the current width, only computed again when the text or the width changes
+    private var visibleDetails: String? = null
+
+    var distance: String = ""
+        set(value) {
+            if (field == value) return
+            field = value
+            distanceWidth = bodyPaint.measureText(value)
+            invalidate()
+        }
+
+    init {
+        val padding = resources.getDimensionPixelSize(R.dimen.activity_vertical_margin)
+        setPadding(padding, 0, padding, 0)
+    }
+
+    private fun textPaint(textAppearanceAttr: Int): TextPaint {
+        val paint = TextPaint(Paint.ANTI_ALIAS_FLAG)
+        val value = TypedValue()
+        if (context.theme.resolveAttribute(textAppearanceAttr, value, true)) {
+            val a = context.obtainStyledAttributes(value.resourceId, intArrayOf(android.R.attr.textSize, android.R.attr.textColor))
+            paint.textSize = a.getDimension(0, paint.textSize)
+            a.getColorStateList(1)?.let { paint.color = it.defaultColor }
+            a.recycle()
+        }
+        return paint
+    }
+
+    fun bind(row: EarthquakeRowText, details: String) {
+        time = row.time
+        if (magnitude != row.magnitude) {
+            magnitude = row.magnitude
+            magnitudeWidth = magnitudePaint.measureText(magnitude)
+            visibleDetails = null
+        }
+        if (this.details != details) {
+            this.details = details
+            visibleDetails = null
+        }
+        invalidate()
+    }
+
+    override fun onMeasure(widthMeasureSpec: Int, heightMeasureSpec: Int) {
+        setMeasuredDimension(
+            getDefaultSize(suggestedMinimumWidth, widthMeasureSpec),
+            resolveSize(rowHeight, heightMeasureSpec)
+        )
+    }
+
+    override fun onSizeChanged(w: Int, h: Int, oldw: Int, oldh: Int) {
+        visibleDetails = null
+    }
+
+    override fun onDraw(canvas: Canvas) {
+        val magnitudeLeft = width - paddingRight - magnitudeWidth
+        val start = paddingLeft.toFloat()
+
+        val centerBaseline = height / 2f - (magnitudePaint.ascent() + magnitudePaint.descent()) / 2f
+        canvas.drawText(magnitude, magnitudeLeft, centerBaseline, magnitudePaint)
+
+        canvas.drawText(time, start, timeBaseline.toFloat(), bodyPaint)
+        if (distance.isNotEmpty()) {
+            canvas.drawText(distance, magnitudeLeft - margin - distanceWidth, timeBaseline.toFloat(), bodyPaint)
+        }
+
+        val detailsText = visibleDetails
+            ?: TextUtils.ellipsize(details, bodyPaint, maxOf(0f, magnitudeLeft - start), TextUtils.TruncateAt.END).toString()
+                .also { visibleDetails = it }
+        canvas.drawText(detailsText, start, detailsBaseline.toFloat(), bodyPaint)
+    }
+
+    override fun onInitializeAccessibilityNodeInfo(info: AccessibilityNodeInfo) {
+        super.onInitializeAccessibilityNodeInfo(info)
+        info.text = listOf(time, details, distance, magnitude).filter { it.isNotEmpty() }.joinToString(" ")
+    }
+}
@@ -0,0 +1,67 @@
+package com.jjuncoder.sideproject.earthquake.viewmodel
+
+import androidx.annotation.AnyThread
+import androidx.annotation.WorkerThread
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import java.text.DecimalFormat
+import java.text.SimpleDateFormat
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Display text of one list row.
+ *
+ * @param updated the version of the earthquake the text was formatted from.
+ */
+data class EarthquakeRowText(val updated: Long, val time: String, val magnitude: String)
+
+/**
+ * Row texts by earthquake id, formatted on a background thread as soon as earthquakes arrive,
+ * so binding a row only assigns Strings. Thread safe, every thread formats with its own formatters.
+ */
+class EarthquakeRowTexts(private val timeZone: TimeZone = TimeZone.getDefault()) {
+    private val texts = ConcurrentHashMap<String, EarthquakeRowText>()
+
+    // SimpleDateFormat and DecimalFormat are not thread safe
+    private val formatter = object : ThreadLocal<Formatter>() {
+        override fun initialValue() = Formatter(timeZone)
+    }
+
+    private class Formatter(timeZone: TimeZone) {
+        private val timeFormat = SimpleDateFormat("HH:mm", Locale.KOREA).apply { this.timeZone = timeZone }
+        private val magnitudeFormat = DecimalFormat("0.0")
+        private val date = Date()
+
+        fun format(earthquake: Earthquake): EarthquakeRowText {
+            date.time = earthquake.updated
+            return EarthquakeRowText(earthquake.updated, timeFormat.format(date), magnitudeFormat.format(earthquake.magnitude))
+        }
+    }
+
+    val size: Int
+        get() = texts.size
+
+    /**
+     * Formats the earthquakes that are new or were updated since their text was formatted.
+     */
+    @WorkerThread
+    fun prepare(earthquakes: Iterable<Earthquake>) {
+        val formatter = formatter.get()!!
+        earthquakes.forEach {
+            if (texts[it.id]?.updated != it.updated) texts[it.id] = formatter.format(it)
+        }
+    }
+
+    /**
+     * The prepared text, or formatted on the calling thread when [earthquake] was not prepared.
+     */
+    @AnyThread
+    operator fun get(earthquake: Earthquake): EarthquakeRowText {
+        texts[earthquake.id]?.let { if (it.updated == earthquake.updated) return it }
+        return formatter.get()!!.format(earthquake).also { texts[earthquake.id] = it }
+    }
+
+    fun remove(ids: Iterable<String>) {
+        ids.forEach { texts.remove(it) }
+    }
+}
@@ -1,33 +1,424 @@
 package com.jjuncoder.sideproject.earthquake.viewmodel
 
+import android.app.Application
+import android.os.SystemClock
+import android.util.Log
+import androidx.annotation.MainThread
+import androidx.lifecycle.AndroidViewModel
 import androidx.lifecycle.LiveData
+import androidx.lifecycle.MediatorLiveData
 import androidx.lifecycle.MutableLiveData
-import androidx.lifecycle.ViewModel
+import androidx.lifecycle.asLiveData
 import androidx.lifecycle.viewModelScope
+import com.jjuncoder.sideproject.earthquake.DeltaSync
 import com.jjuncoder.sideproject.earthquake.EarthquakeDataLoader
+import com.jjuncoder.sideproject.earthquake.EarthquakeFeedCache
+import com.jjuncoder.sideproject.earthquake.FeedSpec
+import com.jjuncoder.sideproject.earthquake.alert.AlertEngine
+import com.jjuncoder.sideproject.earthquake.alert.AlertRule
+import com.jjuncoder.sideproject.earthquake.alert.AlertRuleIndex
+import com.jjuncoder.sideproject.earthquake.db.EarthquakeDatabase
+import com.jjuncoder.sideproject.earthquake.db.EarthquakeEntity
+import com.jjuncoder.sideproject.earthquake.db.EarthquakeSnapshot
+import com.jjuncoder.sideproject.earthquake.geo.BoundingBox
+import com.jjuncoder.sideproject.earthquake.geo.EarthquakeGridIndex
+import com.jjuncoder.sideproject.earthquake.geo.RelativePositions
+import com.jjuncoder.sideproject.earthquake.geo.SignificantMoveFilter
 import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import com.jjuncoder.sideproject.earthquake.model.EarthquakeDataset
+import com.jjuncoder.sideproject.earthquake.model.EarthquakeStore
+import com.jjuncoder.sideproject.earthquake.model.RetentionPolicy
+import com.jjuncoder.sideproject.earthquake.query.EarthquakeQuery
+import com.jjuncoder.sideproject.earthquake.query.EarthquakeQueryIndex
+import com.jjuncoder.sideproject.earthquake.query.EarthquakeQueryResult
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.flow.flatMapLatest
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.onEach
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
+import java.io.File
+import java.io.IOException
+import java.util.*
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 
-class EarthquakeViewModel : ViewModel() {
+class EarthquakeViewModel(application: Application) : AndroidViewModel(application) {
     companion object {
         const val TAG = "EarthquakeViewModel"
+        const val MIN_REFRESH_INTERVAL_MILLIS = 30_000L
+        private const val MAX_DELETE_BATCH = 500
+
+        val DEFAULT_FEEDS = listOf(
+            FeedSpec.summary(FeedSpec.Magnitude.ALL, FeedSpec.Window.HOUR),
+            FeedSpec.summary(FeedSpec.Magnitude.M2_5, FeedSpec.Window.DAY),
+            FeedSpec.summary(FeedSpec.Magnitude.M4_5, FeedSpec.Window.WEEK),
+            FeedSpec.summary(FeedSpec.Magnitude.SIGNIFICANT, FeedSpec.Window.MONTH)
+        )
+
+        /** The longest default feed covers a month. */
+        val DEFAULT_RETENTION = RetentionPolicy(maxAgeMillis = TimeUnit.DAYS.toMillis(31), maxCount = 20_000)
     }
 
-    private val _earthquakes = MutableLiveData(ArrayList<Earthquake>())
-    val earthquake: LiveData<ArrayList<Earthquake>>
-        get() = _earthquakes
+    /**
+     * @param firstRowMillis time from the start of the refresh until the first parsed entries were published,
+     * null when no feed had new entries.
+     * @param completeMillis time until every feed was parsed and stored.
+     * @param entries new or updated entries, [entriesParsed] also counts the known ones read before each feed's high-water mark.
+     * @param bytesDrained bytes read after a feed's high-water mark only to keep its cached body whole.
+     */
+    data class LoadTimings(
+        val firstRowMillis: Long?,
+        val completeMillis: Long,
+        val entries: Int,
+        val entriesParsed: Int,
+        val bytesParsed: Long,
+        val bytesDrained: Long
+    )
+
+    private val earthquakeDao = EarthquakeDatabase.getInstance(application).earthquakeDao()
+
+    /**
+     * Time and magnitude of every row, formatted off the main thread as rows arrive.
+     */
+    val rowTexts = EarthquakeRowTexts()
+
+    /** Rows of one emission of the database, [lastSeq] is the largest [EarthquakeEntity.seq] among them. */
+    private class StoredRows(val earthquakes: List<Earthquake>, val lastSeq: Long)
+
+    // null until the whole table was merged once, then the largest EarthquakeEntity.seq merged
+    private val storedAfter = MutableStateFlow<Long?>(null)
+
+    /**
+     * The last known list, so a cold start shows it before the network answers. After that only the rows written since,
+     * whatever their time, e.g. by the sync worker. Rows a refresh stores itself come back once and are dropped by the merge,
+     * the whole table is not read again.
+     */
+    private val storedEarthquake: LiveData<StoredRows> = storedAfter
+        .flatMapLatest { seq -> if (seq == null) earthquakeDao.observeAll() else earthquakeDao.observeWrittenAfter(seq) }
+        .map { entities ->
+            val earthquakes = entities.map { it.toEarthquake() }.also { rowTexts.prepare(it) }
+            StoredRows(earthquakes, entities.maxOfOrNull { it.seq } ?: 0)
+        }
+        .flowOn(Dispatchers.Default)
+        .asLiveData()
+
+    // both only touched on the main thread
+    private val store = EarthquakeStore(DEFAULT_RETENTION)
+    private val spatialIndex = EarthquakeGridIndex()
+
+    private val _earthquakeChanges = MediatorLiveData<EarthquakeStore.ChangeSet>()
+
+    /**
+     * Every merge into the store, stored rows first and then the refreshed ones batch by batch.
+     * An observer that misses a set, see [EarthquakeStore.ChangeSet.fromVersion], reads [earthquakeSnapshot] instead.
+     */
+    val earthquakeChanges: LiveData<EarthquakeStore.ChangeSet>
+        get() = _earthquakeChanges
+
+    private val _earthquake = MutableLiveData<EarthquakeDataset>()
+    private var datasetJob: Job? = null
+    private var datasetVersion = -1L
+
+    /**
+     * Column oriented copy of the store, built again once the stored rows are merged and after every refresh.
+     */
+    val earthquake: LiveData<EarthquakeDataset>
+        get() = _earthquake
+
+    private val moveFilter = SignificantMoveFilter()
+    private var relativePositionsJob: Job? = null
+    private val _relativePositions = MediatorLiveData<RelativePositions>()
+
+    /**
+     * Distance and direction of every row of [earthquake] from the device,
+     * recomputed when the list changes or the device moved significantly.
+     */
+    val relativePositions: LiveData<RelativePositions>
+        get() = _relativePositions
+
+    private var queryJob: Job? = null
+    private var queryIndex: EarthquakeQueryIndex? = null
+    private val _queryResult = MediatorLiveData<EarthquakeQueryResult>()
+
+    /**
+     * Rows of [earthquake] that match [query], computed again when the list, the query or,
+     * for [EarthquakeQuery.Sort.DISTANCE], the device position changes. Only the latest computation is published.
+     * Nothing is computed while the query is [EarthquakeQuery.ALL], a switch back to it publishes [EarthquakeQueryResult.all].
+     */
+    val queryResult: LiveData<EarthquakeQueryResult>
+        get() = _queryResult
+
+    var query: EarthquakeQuery = EarthquakeQuery.ALL
+        @MainThread set(value) {
+            if (field == value) return
+            field = value
+            updateQueryResult()
+        }
+
+    private val _isRefreshing = MutableLiveData(false)
+    val isRefreshing: LiveData<Boolean>
+        get() = _isRefreshing
+
+    private val _loadTimings = MutableLiveData<LoadTimings>()
+    val loadTimings: LiveData<LoadTimings>
+        get() = _loadTimings
+
+    private var alertEngine = AlertEngine()
+    private var alertRulesJob: Job? = null
+    // rows of the first database emission were already there in an earlier session, only later merges alert
+    private var isAlerting = false
+    private val _alerts = MutableLiveData<List<AlertEngine.Alert>>()
+
+    /**
+     * Alerts of every merge that matched [alertRules].
+     */
+    val alerts: LiveData<List<AlertEngine.Alert>>
+        get() = _alerts
+
+    /**
+     * Rules every new or revised row is checked against, indexed off the main thread.
+     * Rows merged before the index is ready are not checked.
+     */
+    var alertRules: List<AlertRule> = emptyList()
+        @MainThread set(value) {
+            field = value
+            alertRulesJob?.cancel()
+            alertRulesJob = viewModelScope.launch {
+                alertEngine = AlertEngine(withContext(Dispatchers.Default) { AlertRuleIndex.build(value) })
+            }
+        }
+
+    /** Totals since [alertRules] last changed. */
+    val alertStats: AlertEngine.Stats
+        @MainThread get() = alertEngine.stats
+
+    private val refreshCoordinator = RefreshCoordinator(viewModelScope, MIN_REFRESH_INTERVAL_MILLIS) { refresh() }
+
+    /**
+     * Changing the feeds cancels a refresh of the previous ones.
+     */
+    var feedSpecs: List<FeedSpec> = DEFAULT_FEEDS
+        set(value) {
+            if (field == value) return
+            field = value
+            refreshCoordinator.restart()
+        }
+
+    private val feedCache = EarthquakeFeedCache(File(application.cacheDir, "earthquake_feed"))
+    val feedCacheStats: EarthquakeFeedCache.Stats
+        get() = feedCache.stats
+
+    private val deltaSync = DeltaSync()
+
+    // written after every complete refresh, read once on start. Losing it only costs the Room round trip
+    private val snapshot = EarthquakeSnapshot(File(application.cacheDir, "earthquake_snapshot.bin"))
+    private var snapshotVersion = -1L
+
+    /**
+     * Evicted rows are removed from the list and deleted from the database.
+     */
+    var retentionPolicy: RetentionPolicy
+        @MainThread get() = store.retentionPolicy
+        @MainThread set(value) {
+            apply(store.applyRetentionPolicy(value))
+            publishDataset()
+        }
 
     init {
+        viewModelScope.launch {
+            // usually ready before Room answers, both are merged into the same store anyway
+            val dataset = withContext(Dispatchers.IO) { snapshot.read()?.also { rowTexts.prepare(it) } } ?: return@launch
+            if (apply(store.merge(dataset))) publishDataset()
+        }
+        _earthquakeChanges.addSource(storedEarthquake) {
+            if (apply(store.merge(it.earthquakes)) && _isRefreshing.value != true) publishDataset()
+            isAlerting = true
+            storedAfter.value = maxOf(storedAfter.value ?: 0, it.lastSeq)
+        }
+        _relativePositions.addSource(_earthquake) { updateRelativePositions() }
+        _queryResult.addSource(_earthquake) { updateQueryResult() }
+        _queryResult.addSource(_relativePositions) { if (query.sort == EarthquakeQuery.Sort.DISTANCE) updateQueryResult() }
         updateEarthquakeData()
     }
 
-    fun updateEarthquakeData() {
-        viewModelScope.launch {
-            _earthquakes.value = withContext(Dispatchers.IO) {
-                EarthquakeDataLoader.loadEarthquakes()
+    @MainThread
+    fun onDeviceLocation(latitude: Double, longitude: Double) {
+        if (moveFilter.accept(latitude, longitude)) updateRelativePositions()
+    }
+
+    @MainThread
+    private fun updateRelativePositions() {
+        val dataset = _earthquake.value ?: return
+        if (!moveFilter.hasPosition) return
+        val latitude = moveFilter.latitude
+        val longitude = moveFilter.longitude
+        // a newer list or position makes the running computation useless
+        relativePositionsJob?.cancel()
+        relativePositionsJob = viewModelScope.launch {
+            _relativePositions.value = withContext(Dispatchers.Default) {
+                RelativePositions.compute(dataset, latitude, longitude)
+            }
+        }
+    }
+
+    @MainThread
+    private fun updateQueryResult() {
+        val dataset = _earthquake.value ?: return
+        val query = query
+        // typing through a few filters in a row only publishes the last one
+        queryJob?.cancel()
+        if (query == EarthquakeQuery.ALL) {
+            // the list shows the store itself, the index is only built once another query is chosen
+            val previous = _queryResult.value
+            if (previous != null && previous.query != EarthquakeQuery.ALL) _queryResult.value = EarthquakeQueryResult.all(dataset)
+            return
+        }
+        val relativePositions = if (query.sort == EarthquakeQuery.Sort.DISTANCE) _relativePositions.value else null
+        val index = queryIndex?.takeIf { it.dataset === dataset }
+        queryJob = viewModelScope.launch {
+            // the index is built once per dataset, the queries that follow are binary searches
+            val builtIndex = index ?: withContext(Dispatchers.Default) { EarthquakeQueryIndex.build(dataset) }
+            queryIndex = builtIndex
+            _queryResult.value = withContext(Dispatchers.Default) {
+                builtIndex.query(query, System.currentTimeMillis(), relativePositions)
+            }
+        }
+    }
+
+    @MainThread
+    fun earthquakeSnapshot(): List<Earthquake> = store.toList()
+
+    /**
+     * @return false when nothing changed.
+     */
+    @MainThread
+    private fun apply(changes: EarthquakeStore.ChangeSet): Boolean {
+        if (changes.isEmpty) return false
+        changes.removed.forEach { spatialIndex.remove(it.id) }
+        changes.updated.forEach { spatialIndex.add(it.current) }
+        changes.inserted.forEach { spatialIndex.add(it) }
+        _earthquakeChanges.value = changes
+        if (isAlerting) {
+            val alerts = alertEngine.evaluate(changes)
+            if (alerts.isNotEmpty()) _alerts.value = alerts
+        }
+        if (changes.removed.isNotEmpty()) {
+            // otherwise the next emission of the database would bring them back
+            val ids = changes.removed.map { it.id }
+            rowTexts.remove(ids)
+            viewModelScope.launch(Dispatchers.IO) {
+                ids.chunked(MAX_DELETE_BATCH).forEach { earthquakeDao.deleteAll(it) }
+            }
+        }
+        return true
+    }
+
+    @MainThread
+    private fun publishDataset(writeSnapshot: Boolean = false) {
+        val earthquakes = store.toList()
+        val version = store.version
+        datasetVersion = version
+        datasetJob?.cancel()
+        datasetJob = viewModelScope.launch {
+            val dataset = withContext(Dispatchers.Default) { EarthquakeDataset.of(earthquakes) }
+            _earthquake.value = dataset
+            if (writeSnapshot) {
+                snapshotVersion = version
+                withContext(Dispatchers.IO) {
+                    try {
+                        snapshot.write(dataset)
+                    } catch (e: IOException) {
+                        Log.w(TAG, "failed to write snapshot", e)
+                    }
+                }
+            }
+        }
+    }
+
+    @MainThread
+    fun earthquakesWithin(latitude: Double, longitude: Double, radiusKm: Double): List<Earthquake> =
+        spatialIndex.withinRadius(latitude, longitude, radiusKm)
+
+    @MainThread
+    fun earthquakesIn(box: BoundingBox): List<Earthquake> = spatialIndex.inBoundingBox(box)
+
+    /**
+     * Joins the running refresh, if any. Without [force] a refresh that just completed is not repeated.
+     */
+    fun updateEarthquakeData(force: Boolean = false) {
+        if (refreshCoordinator.request(force) == null) {
+            // tell the swipe indicator that there is nothing to wait for
+            _isRefreshing.value = false
+        }
+    }
+
+    /**
+     * @return false when every feed failed, so the next request is not throttled.
+     */
+    private suspend fun refresh(): Boolean {
+        _isRefreshing.value = true
+        var isComplete = false
+        try {
+            val startMillis = SystemClock.elapsedRealtime()
+            val startStats = deltaSync.stats
+            var firstRowMillis: Long? = null
+
+            // new and revised rows only, everything the store already had is dropped by the merge
+            val fetched = HashMap<String, Earthquake>()
+            // a screen left open for long only ages out on refreshes
+            apply(store.evict())
+
+            // an unchanged feed only has to be parsed again when the store is still empty
+            val isStoreEmpty = earthquakeDao.count() == 0
+            var isStored = false
+            val specs = feedSpecs
+            val failedFeeds = AtomicInteger()
+            try {
+                EarthquakeDataLoader.loadBatches(
+                    specs,
+                    cache = feedCache,
+                    reparseUnchanged = isStoreEmpty,
+                    deltaSync = deltaSync,
+                    onFailure = { _, _ -> failedFeeds.incrementAndGet() }
+                )
+                    .onEach { rowTexts.prepare(it) }
+                    .flowOn(Dispatchers.Default)
+                    .collect { batch ->
+                        val changes = store.merge(batch)
+                        changes.inserted.forEach { fetched[it.id] = it }
+                        changes.updated.forEach { fetched[it.current.id] = it.current }
+                        changes.removed.forEach { fetched.remove(it.id) }
+                        if (apply(changes) && firstRowMillis == null) {
+                            firstRowMillis = SystemClock.elapsedRealtime() - startMillis
+                        }
+                    }
+
+                if (fetched.isNotEmpty()) {
+                    withContext(Dispatchers.IO) {
+                        earthquakeDao.upsertAll(fetched.values.map { EarthquakeEntity.from(it) })
+                    }
+                }
+                isStored = true
+            } finally {
+                // the marks already moved past entries that never reached the store
+                if (!isStored) deltaSync.reset()
             }
+            val read = deltaSync.stats - startStats
+            val timings = LoadTimings(firstRowMillis, SystemClock.elapsedRealtime() - startMillis, fetched.size, read.entriesParsed, read.bytesParsed, read.bytesDrained)
+            Log.d(TAG, "load timings : $timings, feeds stopped early : ${read.feedsStoppedEarly}, cache stats : ${feedCache.stats}, alert stats : ${alertEngine.stats}")
+            _loadTimings.value = timings
+            isComplete = true
+            return specs.isEmpty() || failedFeeds.get() < specs.size
+        } finally {
+            _isRefreshing.value = false
+            // also after a cancelled refresh, its first batches are already in the store
+            val writeSnapshot = isComplete && snapshotVersion != store.version
+            if (datasetVersion != store.version || writeSnapshot) publishDataset(writeSnapshot)
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,62 @@
+package com.jjuncoder.sideproject.earthquake.viewmodel
+
+import android.os.SystemClock
+import androidx.annotation.MainThread
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.launch
+
+/**
+ * Runs at most one [refresh] at a time in [scope].
+ * Requests made while a refresh is running join it, and a refresh that completed
+ * less than [minIntervalMillis] ago is not repeated unless forced.
+ * A refresh that returns false, e.g. because no feed could be loaded, does not count as completed.
+ */
+class RefreshCoordinator(
+    private val scope: CoroutineScope,
+    private val minIntervalMillis: Long,
+    private val clock: () -> Long = { SystemClock.elapsedRealtime() },
+    private val refresh: suspend () -> Boolean
+) {
+    private var inFlight: Job? = null
+    private var lastCompletedMillis: Long? = null
+
+    val isRunning: Boolean
+        get() = inFlight?.isActive == true
+
+    /**
+     * @return the running refresh, or null when the last one is recent enough.
+     */
+    @MainThread
+    fun request(force: Boolean = false): Job? {
+        inFlight?.let { if (it.isActive) return it }
+        val last = lastCompletedMillis
+        if (!force && last != null && clock() - last < minIntervalMillis) {
+            return null
+        }
+        return start(null)
+    }
+
+    /**
+     * Cancels the running refresh, e.g. because its parameters changed, and starts a new one.
+     */
+    @MainThread
+    fun restart(): Job = start(inFlight)
+
+    @MainThread
+    fun cancel() {
+        inFlight?.cancel()
+    }
+
+    private fun start(stale: Job?): Job {
+        stale?.cancel()
+        val job = scope.launch {
+            // the stale refresh has to finish its cleanup before the new one starts
+            stale?.cancelAndJoin()
+            if (refresh()) lastCompletedMillis = clock()
+        }
+        inFlight = job
+        return job
+    }
+}
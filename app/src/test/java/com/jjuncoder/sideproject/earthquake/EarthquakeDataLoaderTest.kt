@@ -0,0 +1,235 @@
+package com.jjuncoder.sideproject.earthquake
+
+import com.jjuncoder.sideproject.earthquake.benchmark.LocalFeedServer
+import com.jjuncoder.sideproject.earthquake.benchmark.SyntheticFeed
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import com.jjuncoder.sideproject.earthquake.parser.FeedFormatException
+import com.jjuncoder.sideproject.earthquake.parser.PullFeedParser
+import com.sun.net.httpserver.HttpServer
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.kxml2.io.KXmlParser
+import java.io.IOException
+import java.net.HttpURLConnection
+import java.net.InetSocketAddress
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class EarthquakeDataLoaderTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private lateinit var server: HttpServer
+    private val feedBody = javaClass.getResourceAsStream("/feed/2.5_day.atom")!!.use { it.readBytes() }
+    private val parser = PullFeedParser { KXmlParser() }
+    private val unavailableResponses = AtomicInteger()
+    private val brokenGeoJsonRequests = AtomicInteger()
+    private val released = CountDownLatch(1)
+
+    @Before
+    fun setUp() {
+        server = HttpServer.create(InetSocketAddress("127.0.0.1", 0), 0).apply {
+            createContext("/") { exchange ->
+                if (exchange.requestURI.path.endsWith("missing.atom")) {
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1)
+                } else if (exchange.requestURI.path.endsWith("broken.atom")) {
+                    // the parser throws XmlPullParserException, which is not an IOException
+                    val body = "<feed><entry><id>us1</entry></feed>".toByteArray()
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.size.toLong())
+                    exchange.responseBody.use { it.write(body) }
+                } else if (exchange.requestURI.path.endsWith("broken.geojson")) {
+                    brokenGeoJsonRequests.incrementAndGet()
+                    // Gson throws MalformedJsonException, an IOException
+                    val body = "{\"features\":[{\"id\": }]}".toByteArray()
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.size.toLong())
+                    exchange.responseBody.use { it.write(body) }
+                } else if (unavailableResponses.getAndDecrement() > 0) {
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_UNAVAILABLE, -1)
+                } else if (exchange.requestURI.path.endsWith("slow.atom")) {
+                    // 1 KB every 500 ms, until the client goes away or the test is over.
+                    // without keep-alive the JVM's HttpURLConnection closes the socket on disconnect
+                    // instead of handing it to its keep-alive cleaner
+                    exchange.responseHeaders.add("Connection", "close")
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, feedBody.size.toLong())
+                    try {
+                        for (offset in feedBody.indices step 1024) {
+                            exchange.responseBody.write(feedBody, offset, minOf(1024, feedBody.size - offset))
+                            exchange.responseBody.flush()
+                            if (released.await(500, TimeUnit.MILLISECONDS)) break
+                        }
+                    } catch (e: IOException) {
+                        // the client disconnected
+                    }
+                } else {
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, feedBody.size.toLong())
+                    exchange.responseBody.use { it.write(feedBody) }
+                }
+                exchange.close()
+            }
+            start()
+        }
+    }
+
+    @After
+    fun tearDown() {
+        released.countDown()
+        server.stop(0)
+    }
+
+    private fun spec(name: String) = FeedSpec(name, "http://127.0.0.1:${server.address.port}/$name.atom")
+
+    @Test
+    fun loadFeeds_mergesFeedsById() = runBlocking {
+        val result = EarthquakeDataLoader.loadFeeds(listOf(spec("2.5_day"), spec("2.5_week")), parser = parser)
+
+        assertEquals(2, result.feeds.size)
+        assertEquals(8, result.earthquakes.size)
+        assertEquals(result.earthquakes.sortedByDescending { it.updated }, result.earthquakes)
+    }
+
+    @Test
+    fun loadFeeds_failedFeedDoesNotBlockOthers() = runBlocking {
+        val result = EarthquakeDataLoader.loadFeeds(listOf(spec("missing"), spec("2.5_day")), maxConcurrency = 1, parser = parser)
+
+        val (missing, day) = result.feeds
+        assertNotNull(missing.error)
+        assertNull(missing.earthquakes)
+        assertNull(day.error)
+        assertEquals(8, result.earthquakes.size)
+    }
+
+    @Test
+    fun loadBatches_brokenFeedDoesNotCancelOthers() = runBlocking {
+        val failed = ArrayList<String>()
+        val batches = EarthquakeDataLoader.loadBatches(listOf(spec("broken"), spec("2.5_day")), maxConcurrency = 1, parser = parser) { spec, _ ->
+            synchronized(failed) { failed.add(spec.name) }
+        }.toList()
+
+        assertEquals(8, batches.sumBy { it.size })
+        assertEquals(listOf("broken"), failed)
+    }
+
+    @Test
+    fun loadFeeds_retriesServerErrors() = runBlocking {
+        unavailableResponses.set(2)
+        val retryPolicy = RetryPolicy(maxAttempts = 3, initialDelayMillis = 1)
+
+        val result = EarthquakeDataLoader.loadFeeds(listOf(spec("2.5_day")), parser = parser, retryPolicy = retryPolicy)
+
+        assertNull(result.feeds.single().error)
+        assertEquals(8, result.earthquakes.size)
+    }
+
+    @Test
+    fun loadFeeds_doesNotRetryClientErrors() = runBlocking {
+        val retryPolicy = RetryPolicy(maxAttempts = 3, initialDelayMillis = 60_000)
+
+        val result = withTimeout(5_000) {
+            EarthquakeDataLoader.loadFeeds(listOf(spec("missing")), parser = parser, retryPolicy = retryPolicy)
+        }
+
+        assertTrue(result.feeds.single().error is HttpStatusException)
+    }
+
+    @Test
+    fun loadFeeds_doesNotRetryMalformedBody() = runBlocking {
+        val retryPolicy = RetryPolicy(maxAttempts = 3, initialDelayMillis = 60_000)
+        val spec = FeedSpec("broken", "http://127.0.0.1:${server.address.port}/broken.geojson", FeedSpec.Format.GEOJSON)
+
+        val result = withTimeout(5_000) {
+            EarthquakeDataLoader.loadFeeds(listOf(spec), retryPolicy = retryPolicy)
+        }
+
+        assertTrue(result.feeds.single().error is FeedFormatException)
+        assertEquals(1, brokenGeoJsonRequests.get())
+    }
+
+    @Test
+    fun loadEarthquakes_returnsEntriesNewerThanHighWaterMark() {
+        val feedUrl = spec("2.5_day").url
+        val all = EarthquakeDataLoader.loadEarthquakes(parser, feedUrl = feedUrl)!!
+        val third = all[2]
+
+        val delta = EarthquakeDataLoader.loadEarthquakes(parser, feedUrl = feedUrl, highWaterMark = HighWaterMark(third.updated, setOf(third.id)))
+
+        assertEquals(all.subList(0, 2), delta)
+    }
+
+    @Test
+    fun loadFeeds_deltaSyncStopsAtKnownEntries() = runBlocking {
+        LocalFeedServer().use { feedServer ->
+            val spec = feedServer.serve("large", SyntheticFeed(2_000).toByteArray())
+            val deltaSync = DeltaSync()
+
+            val first = EarthquakeDataLoader.loadFeeds(listOf(spec), parser = parser, deltaSync = deltaSync)
+            val firstStats = deltaSync.stats
+            val second = EarthquakeDataLoader.loadFeeds(listOf(spec), parser = parser, deltaSync = deltaSync)
+            val secondStats = deltaSync.stats - firstStats
+
+            assertEquals(2_000, first.earthquakes.size)
+            assertEquals(2_000, firstStats.entriesParsed)
+            assertEquals(HighWaterMark.of(first.earthquakes), deltaSync.highWaterMark(spec))
+            assertEquals(emptyList<Earthquake>(), second.earthquakes)
+            // the newest entry is the mark itself, the one after it is older
+            assertEquals(2, secondStats.entriesParsed)
+            assertEquals(1, secondStats.feedsStoppedEarly)
+            assertTrue("${secondStats.bytesRead} of ${firstStats.bytesRead} bytes", secondStats.bytesRead < firstStats.bytesRead / 10)
+            assertEquals(0, secondStats.bytesDrained)
+        }
+    }
+
+    @Test
+    fun loadFeeds_deltaSyncCountsCachedBodyCopyAsDrained() = runBlocking {
+        LocalFeedServer().use { feedServer ->
+            val body = SyntheticFeed(2_000).toByteArray()
+            val spec = feedServer.serve("large", body)
+            val cache = EarthquakeFeedCache(temporaryFolder.newFolder())
+            val deltaSync = DeltaSync()
+
+            EarthquakeDataLoader.loadFeeds(listOf(spec), cache = cache, parser = parser, deltaSync = deltaSync)
+            val firstStats = deltaSync.stats
+            EarthquakeDataLoader.loadFeeds(listOf(spec), cache = cache, parser = parser, deltaSync = deltaSync)
+            val secondStats = deltaSync.stats - firstStats
+
+            assertEquals(body.size.toLong(), firstStats.bytesRead)
+            assertEquals(1, secondStats.feedsStoppedEarly)
+            // the parser stopped early, the cache still read the body to the end
+            assertTrue("${secondStats.bytesParsed} of ${body.size} bytes", secondStats.bytesParsed < body.size / 10)
+            assertEquals(body.size.toLong(), secondStats.bytesRead)
+        }
+    }
+
+    @Test
+    fun loadBatches_cancelStopsReadingAndDropsPartialBody() = runBlocking {
+        val cacheDirectory = temporaryFolder.newFolder()
+        val cache = EarthquakeFeedCache(cacheDirectory)
+        val firstBatch = CompletableDeferred<Unit>()
+        val job = launch(Dispatchers.Default) {
+            EarthquakeDataLoader.loadBatches(spec("slow"), cache, parser = parser, firstBatchSize = 1).collect {
+                firstBatch.complete(Unit)
+            }
+        }
+        withTimeout(5_000) { firstBatch.await() }
+
+        // the whole body would take more than three seconds
+        withTimeout(2_000) { job.cancelAndJoin() }
+        assertTrue(job.isCancelled)
+        assertEquals(emptyList<String>(), cacheDirectory.list()!!.toList())
+    }
+}
@@ -0,0 +1,169 @@
+package com.jjuncoder.sideproject.earthquake
+
+import com.jjuncoder.sideproject.earthquake.parser.PullFeedParser
+import com.sun.net.httpserver.HttpServer
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.kxml2.io.KXmlParser
+import java.io.File
+import java.net.HttpURLConnection
+import java.net.InetSocketAddress
+import java.net.URL
+
+class EarthquakeFeedCacheTest {
+    companion object {
+        private const val ETAG = "\"feed-v1\""
+        private const val LAST_MODIFIED = "Sat, 20 Mar 2021 10:01:44 GMT"
+    }
+
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private lateinit var server: HttpServer
+    private lateinit var feedUrl: URL
+    private val feedBody = javaClass.getResourceAsStream("/feed/2.5_day.atom")!!.use { it.readBytes() }
+    private var sendEtag = true
+
+    @Before
+    fun setUp() {
+        server = HttpServer.create(InetSocketAddress("127.0.0.1", 0), 0).apply {
+            createContext("/feed.atom") { exchange ->
+                val notModified = if (sendEtag) {
+                    exchange.requestHeaders.getFirst("If-None-Match") == ETAG
+                } else {
+                    exchange.requestHeaders.getFirst("If-Modified-Since") == LAST_MODIFIED
+                }
+                if (sendEtag) exchange.responseHeaders.add("ETag", ETAG)
+                exchange.responseHeaders.add("Last-Modified", LAST_MODIFIED)
+                if (notModified) {
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1)
+                } else {
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, feedBody.size.toLong())
+                    exchange.responseBody.use { it.write(feedBody) }
+                }
+                exchange.close()
+            }
+            // both paths have the same String.hashCode()
+            for (path in listOf("/Aa", "/BB")) {
+                createContext(path) { exchange ->
+                    exchange.responseHeaders.add("ETag", ETAG)
+                    if (exchange.requestHeaders.getFirst("If-None-Match") == ETAG) {
+                        exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1)
+                    } else {
+                        val body = path.toByteArray()
+                        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.size.toLong())
+                        exchange.responseBody.use { it.write(body) }
+                    }
+                    exchange.close()
+                }
+            }
+            start()
+        }
+        feedUrl = URL("http://127.0.0.1:${server.address.port}/feed.atom")
+    }
+
+    @After
+    fun tearDown() {
+        server.stop(0)
+    }
+
+    @Test
+    fun fetch_revalidatesWithEtag() {
+        val cache = EarthquakeFeedCache(temporaryFolder.newFolder())
+
+        cache.fetch(feedUrl)
+        val second = cache.open(feedUrl)
+        second.close()
+
+        assertTrue(second is EarthquakeFeedCache.Response.NotModified)
+        assertArrayEquals(feedBody, (second as EarthquakeFeedCache.Response.NotModified).body.readBytes())
+        assertEquals(EarthquakeFeedCache.Stats(hits = 1, misses = 1, revalidations = 1, bytesSaved = feedBody.size.toLong()), cache.stats)
+    }
+
+    @Test
+    fun fetch_urlsOfEqualHashCodeKeepSeparateEntries() {
+        val cache = EarthquakeFeedCache(temporaryFolder.newFolder())
+        val first = URL("http://127.0.0.1:${server.address.port}/Aa")
+        val second = URL("http://127.0.0.1:${server.address.port}/BB")
+
+        assertEquals(first.toString().hashCode(), second.toString().hashCode())
+        assertEquals("/Aa", cache.fetch(first).readText())
+        assertEquals("/BB", cache.fetch(second).readText())
+        assertEquals(2, cache.stats.misses)
+    }
+
+    @Test
+    fun open_deletesEntriesOfOlderKeyFormat() {
+        val directory = temporaryFolder.newFolder()
+        val stale = listOf("1b3f2a9c.body", "1b3f2a9c.meta", "1b3f2a9c4071882350.tmp").map { File(directory, it).apply { writeText("old") } }
+        val cache = EarthquakeFeedCache(directory)
+
+        val body = cache.fetch(feedUrl)
+
+        assertTrue(stale.none { it.exists() })
+        assertEquals(setOf(body.name, body.name.replace(".body", ".meta")), directory.list()!!.toSet())
+    }
+
+    @Test
+    fun fetch_revalidatesWithLastModified() {
+        sendEtag = false
+        val cache = EarthquakeFeedCache(temporaryFolder.newFolder())
+
+        cache.fetch(feedUrl)
+        val second = cache.open(feedUrl)
+        second.close()
+
+        assertTrue(second is EarthquakeFeedCache.Response.NotModified)
+        assertEquals(1, cache.stats.hits)
+    }
+
+    @Test
+    fun open_keepsBodyOnlyWhenCommitted() {
+        val cache = EarthquakeFeedCache(temporaryFolder.newFolder())
+
+        cache.open(feedUrl).use { it.stream.read(ByteArray(100)) }
+        val abandoned = cache.open(feedUrl)
+        abandoned.close()
+        cache.open(feedUrl).use { (it as EarthquakeFeedCache.Response.Modified).commit() }
+        val committed = cache.open(feedUrl)
+        committed.close()
+
+        assertTrue(abandoned is EarthquakeFeedCache.Response.Modified)
+        assertArrayEquals(feedBody, (committed as EarthquakeFeedCache.Response.NotModified).body.readBytes())
+    }
+
+    @Test
+    fun loadBatches_emitsSmallFirstBatch() {
+        val parser = PullFeedParser { KXmlParser() }
+        val spec = FeedSpec("feed", feedUrl.toString())
+
+        val batches = runBlocking {
+            EarthquakeDataLoader.loadBatches(spec, parser = parser, firstBatchSize = 3, batchSize = 4).toList()
+        }
+
+        assertEquals(listOf(3, 4, 1), batches.map { it.size })
+        assertEquals(EarthquakeDataLoader.loadEarthquakes(parser, feedUrl = feedUrl.toString()), batches.flatten())
+    }
+
+    @Test
+    fun loadEarthquakes_skipsParseWhenNotModified() {
+        val cache = EarthquakeFeedCache(temporaryFolder.newFolder())
+        val parser = PullFeedParser { KXmlParser() }
+
+        val first = EarthquakeDataLoader.loadEarthquakes(parser, cache, reparseUnchanged = false, feedUrl = feedUrl.toString())
+        val second = EarthquakeDataLoader.loadEarthquakes(parser, cache, reparseUnchanged = false, feedUrl = feedUrl.toString())
+        val reparsed = EarthquakeDataLoader.loadEarthquakes(parser, cache, reparseUnchanged = true, feedUrl = feedUrl.toString())
+
+        assertEquals(8, first?.size)
+        assertEquals(null, second)
+        assertEquals(8, reparsed?.size)
+    }
+}
@@ -0,0 +1,41 @@
+package com.jjuncoder.sideproject.earthquake
+
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class HighWaterMarkTest {
+    private fun earthquake(id: String, updated: Long) = Earthquake(id, updated, "place", 0.0, 0.0, 2.5)
+
+    @Test
+    fun of_keepsIdsOfNewestTime() {
+        val mark = HighWaterMark.of(listOf(earthquake("a", 10), earthquake("b", 20), earthquake("c", 20), earthquake("d", 5)))
+
+        assertEquals(HighWaterMark(20, setOf("b", "c")), mark)
+        assertNull(HighWaterMark.of(emptyList()))
+    }
+
+    @Test
+    fun entriesAtTheMarkAreOnlyKnownById() {
+        val mark = HighWaterMark(20, setOf("b"))
+
+        assertTrue(mark.isKnown(earthquake("b", 20)))
+        assertFalse(mark.isPassed(earthquake("b", 20)))
+        assertFalse(mark.isKnown(earthquake("c", 20)))
+        assertFalse(mark.isKnown(earthquake("b", 21)))
+        assertTrue(mark.isPassed(earthquake("x", 19)))
+    }
+
+    @Test
+    fun plus_keepsNewerMark() {
+        val mark = HighWaterMark(20, setOf("b"))
+
+        assertEquals(mark, mark + HighWaterMark(10, setOf("a")))
+        assertEquals(HighWaterMark(30, setOf("c")), mark + HighWaterMark(30, setOf("c")))
+        assertEquals(HighWaterMark(20, setOf("b", "c")), mark + HighWaterMark(20, setOf("c")))
+        assertEquals(mark, mark + null)
+    }
+}
@@ -0,0 +1,112 @@
+package com.jjuncoder.sideproject.earthquake.alert
+
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import com.jjuncoder.sideproject.earthquake.model.EarthquakeStore
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.*
+
+class AlertEngineTest {
+    private val tokyo = AlertRule("tokyo", AlertRegion.Circle(35.68, 139.77, 300.0), minMagnitude = 4.5)
+    private val shallowJapan = AlertRule(
+        "shallow japan",
+        AlertRegion.Polygon(doubleArrayOf(30.0, 30.0, 46.0, 46.0), doubleArrayOf(128.0, 146.0, 146.0, 128.0)),
+        maxDepthKm = 70.0
+    )
+    // crosses the antimeridian
+    private val fiji = AlertRule("fiji", AlertRegion.Circle(-17.7, 178.0, 800.0), minMagnitude = 6.0)
+
+    private fun earthquake(id: String, latitude: Double, longitude: Double, magnitude: Double, depthKm: Double = 10.0, updated: Long = 0) =
+        Earthquake(id, updated, "place", latitude, longitude, magnitude, depthKm)
+
+    private fun changes(inserted: List<Earthquake> = emptyList(), updated: List<EarthquakeStore.Revision> = emptyList()) =
+        EarthquakeStore.ChangeSet(inserted, updated, emptyList(), 0, 1)
+
+    @Test
+    fun ruleIndex_matchesLikeCheckingEveryRule() {
+        val random = Random(3)
+        val rules = List(400) {
+            val region = if (it % 3 == 0) {
+                val south = random.nextDouble() * 150 - 80
+                val west = random.nextDouble() * 320 - 180
+                AlertRegion.Polygon(
+                    doubleArrayOf(south, south + random.nextDouble() * 20, south + random.nextDouble() * 20),
+                    doubleArrayOf(west, west + random.nextDouble() * 30, west + random.nextDouble() * 10)
+                )
+            } else {
+                AlertRegion.Circle(random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180, random.nextDouble() * 3_000)
+            }
+            AlertRule(
+                "rule$it",
+                region,
+                minMagnitude = if (it % 4 == 0) null else random.nextInt(70) / 10.0,
+                maxDepthKm = if (it % 5 == 0) 70.0 else null
+            )
+        } + listOf(tokyo, shallowJapan, fiji)
+        val index = AlertRuleIndex.build(rules)
+
+        val out = ArrayList<AlertRule>()
+        repeat(5_000) {
+            val latitude = random.nextDouble() * 180 - 90
+            val longitude = random.nextDouble() * 360 - 180
+            val magnitude = if (it % 50 == 0) Double.NaN else random.nextInt(80) / 10.0
+            val depthKm = if (it % 40 == 0) Double.NaN else random.nextDouble() * 300
+            out.clear()
+            val candidates = index.match(latitude, longitude, magnitude, depthKm, out)
+            val expected = rules.filter { rule -> rule.matches(earthquake("e", latitude, longitude, magnitude, depthKm)) }
+
+            assertEquals(expected.toSet(), out.toSet())
+            assertEquals(expected.size, out.size)
+            assertTrue(candidates <= rules.size)
+        }
+    }
+
+    @Test
+    fun evaluate_checksRegionMagnitudeAndDepth() {
+        val engine = AlertEngine(AlertRuleIndex.build(listOf(tokyo, shallowJapan, fiji)))
+        val strongNearTokyo = earthquake("a", 35.5, 140.2, 5.1)
+        val weakDeepNearTokyo = earthquake("b", 35.5, 140.2, 3.0, depthKm = 120.0)
+        val unknownDepthInJapan = earthquake("c", 40.0, 141.0, 3.0, depthKm = Double.NaN)
+        val acrossAntimeridian = earthquake("d", -18.0, -178.5, 6.4)
+
+        val alerts = engine.evaluate(changes(listOf(strongNearTokyo, weakDeepNearTokyo, unknownDepthInJapan, acrossAntimeridian)))
+
+        assertEquals(
+            // rules without a threshold come first
+            listOf(shallowJapan to strongNearTokyo, tokyo to strongNearTokyo, fiji to acrossAntimeridian),
+            alerts.map { it.rule to it.earthquake }
+        )
+        assertEquals(4, engine.stats.events)
+        assertEquals(3, engine.stats.alerts)
+    }
+
+    @Test
+    fun evaluate_revisionOnlyAlertsNewlyMatchedRules() {
+        val engine = AlertEngine(AlertRuleIndex.build(listOf(tokyo, shallowJapan)))
+        val first = earthquake("a", 35.5, 140.2, 4.0, updated = 1)
+        assertEquals(listOf(shallowJapan), engine.evaluate(changes(listOf(first))).map { it.rule })
+
+        val upgraded = first.copy(updated = 2, magnitude = 4.8)
+        val alerts = engine.evaluate(changes(updated = listOf(EarthquakeStore.Revision(first, upgraded))))
+        assertEquals(listOf(AlertEngine.Alert(tokyo, upgraded)), alerts)
+
+        val relocated = upgraded.copy(updated = 3, details = "revised place")
+        assertTrue(engine.evaluate(changes(updated = listOf(EarthquakeStore.Revision(upgraded, relocated)))).isEmpty())
+        assertEquals(3, engine.stats.events)
+    }
+
+    @Test
+    fun polygon_containsWithEvenOddRule() {
+        // a U opening to the north
+        val u = AlertRegion.Polygon(
+            doubleArrayOf(0.0, 0.0, 10.0, 10.0, 2.0, 2.0, 10.0, 10.0),
+            doubleArrayOf(0.0, 10.0, 10.0, 8.0, 8.0, 2.0, 2.0, 0.0)
+        )
+        assertTrue(u.contains(1.0, 5.0))
+        assertTrue(u.contains(6.0, 1.0))
+        assertFalse(u.contains(6.0, 5.0))
+        assertFalse(u.contains(11.0, 1.0))
+    }
+}
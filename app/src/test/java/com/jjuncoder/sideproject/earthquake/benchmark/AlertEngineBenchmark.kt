@@ -0,0 +1,82 @@
+package com.jjuncoder.sideproject.earthquake.benchmark
+
+import com.jjuncoder.sideproject.earthquake.alert.AlertEngine
+import com.jjuncoder.sideproject.earthquake.alert.AlertRegion
+import com.jjuncoder.sideproject.earthquake.alert.AlertRule
+import com.jjuncoder.sideproject.earthquake.alert.AlertRuleIndex
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import com.jjuncoder.sideproject.earthquake.model.EarthquakeStore
+import org.junit.Assert.assertEquals
+import org.junit.BeforeClass
+import org.junit.Test
+import java.util.*
+
+/**
+ * Alert evaluation of merged batches against hundreds of rules, indexed rules against checking every rule for every event.
+ * Results are printed, e.g. `./gradlew testDebugUnitTest -Pbenchmark --tests '*AlertEngineBenchmark' -i`
+ */
+class AlertEngineBenchmark {
+    companion object {
+        @BeforeClass
+        @JvmStatic
+        fun assumeEnabled() = Benchmarks.assumeEnabled()
+
+        private const val EVENTS = 20_000
+        private const val BATCH_SIZE = 200
+        private const val ROUNDS = 5
+    }
+
+    private val random = Random(42)
+    private val earthquakes = List(EVENTS) {
+        Earthquake("id$it", it.toLong(), "place", random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180,
+            1.0 + random.nextInt(70) / 10.0, random.nextDouble() * 700)
+    }
+    private val batches = earthquakes.chunked(BATCH_SIZE).map { EarthquakeStore.ChangeSet(it, emptyList(), emptyList(), 0, 1) }
+    private var sink = 0L
+
+    private fun rules(count: Int): List<AlertRule> = List(count) {
+        val latitude = random.nextDouble() * 140 - 70
+        val longitude = random.nextDouble() * 360 - 180
+        val region = if (it % 4 == 0) {
+            AlertRegion.Polygon(doubleArrayOf(latitude, latitude + 8, latitude + 3), doubleArrayOf(longitude, longitude + 4, longitude + 12))
+        } else {
+            AlertRegion.Circle(latitude, longitude, 100.0 + random.nextDouble() * 900)
+        }
+        AlertRule("rule$it", region, minMagnitude = 2.5 + random.nextInt(40) / 10.0, maxDepthKm = if (it % 3 == 0) 70.0 else null)
+    }
+
+    /**
+     * @return alerts per round.
+     */
+    private fun measure(name: String, block: () -> Long): Long {
+        sink += block()
+        val startNanos = System.nanoTime()
+        var alerts = 0L
+        repeat(ROUNDS) { alerts += block() }
+        val elapsedNanos = System.nanoTime() - startNanos
+        println(String.format(Locale.US, "%-32s : %9.0f events/s, %6d alerts", name, EVENTS * ROUNDS * 1e9 / elapsedNanos, alerts / ROUNDS))
+        return alerts / ROUNDS
+    }
+
+    @Test
+    fun indexedRulesVersusNestedLoop() {
+        for (ruleCount in intArrayOf(100, 500, 2_000)) {
+            val rules = rules(ruleCount)
+            val engine = AlertEngine(AlertRuleIndex.build(rules))
+            // a faster index is worthless if it misses or invents alerts
+            val indexedAlerts = batches.flatMap { engine.evaluate(it) }.map { it.rule.id to it.earthquake.id }.toSet()
+            val nestedAlerts = earthquakes.flatMap { e -> rules.filter { it.matches(e) }.map { it.id to e.id } }.toSet()
+            assertEquals(nestedAlerts, indexedAlerts)
+
+            val indexed = measure("index, $ruleCount rules") {
+                batches.sumOf { engine.evaluate(it).size.toLong() }
+            }
+            println(String.format(Locale.US, "  %.1f candidate rules per event", engine.stats.candidatesPerEvent))
+            val nested = measure("nested loop, $ruleCount rules") {
+                batches.sumOf { batch -> batch.inserted.sumOf { e -> rules.count { it.matches(e) }.toLong() } }
+            }
+            assertEquals(nested, indexed)
+        }
+        println("sink : $sink")
+    }
+}
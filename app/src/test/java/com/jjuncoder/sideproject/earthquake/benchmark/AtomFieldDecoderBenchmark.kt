@@ -0,0 +1,69 @@
+package com.jjuncoder.sideproject.earthquake.benchmark
+
+import com.jjuncoder.sideproject.earthquake.parser.AtomFieldDecoder
+import org.junit.BeforeClass
+import org.junit.Test
+import java.lang.management.ManagementFactory
+import java.text.SimpleDateFormat
+import java.util.*
+
+/**
+ * Per-entry cost of decoding timestamp, point and title, compared with the previous String based code.
+ * Results are printed, e.g. `./gradlew testDebugUnitTest -Pbenchmark --tests '*AtomFieldDecoderBenchmark' -i`
+ */
+class AtomFieldDecoderBenchmark {
+    companion object {
+        @BeforeClass
+        @JvmStatic
+        fun assumeEnabled() = Benchmarks.assumeEnabled()
+
+        private const val WARMUP_ITERATIONS = 20_000
+        private const val ITERATIONS = 200_000
+
+        private val ENTRIES = arrayOf(
+            arrayOf("2021-03-20T09:48:32.040Z", "34.5361 141.0874", "M 4.6 - 113 km SE of Katsuura, Japan"),
+            arrayOf("2021-03-20T09:31:05.212Z", "63.3764 -150.0577", "M 2.9 - 62 km W of Cantwell, Alaska"),
+            arrayOf("2021-03-20T03:20:11.040Z", "-13.9107 -76.2869", "M 4.3 - 23 km SSW of Pisco, Peru")
+        )
+    }
+
+    private var sink = 0.0
+    private val coordinates = DoubleArray(2)
+
+    private fun decodeWithDecoders(index: Int) {
+        val (updated, point, title) = ENTRIES[index % ENTRIES.size]
+        AtomFieldDecoder.parsePoint(point, out = coordinates)
+        sink += AtomFieldDecoder.parseTimestamp(updated) + coordinates[0] + coordinates[1] +
+                AtomFieldDecoder.parseTitleMagnitude(title) + AtomFieldDecoder.titlePlaceStart(title)
+    }
+
+    private fun decodeWithStrings(index: Int) {
+        val (updated, point, title) = ENTRIES[index % ENTRIES.size]
+        val date = SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.KOREA).parse(updated)!!
+        val location = point.split(" ")
+        val magnitudeString = title.split(" ")[1]
+        sink += date.time + location[0].toDouble() + location[1].toDouble() +
+                magnitudeString.toDouble() + title.split(" - ")[1].length
+    }
+
+    private fun measure(name: String, block: (Int) -> Unit) {
+        repeat(WARMUP_ITERATIONS) { block(it) }
+
+        val threadBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        val threadId = Thread.currentThread().id
+        val startBytes = threadBean.getThreadAllocatedBytes(threadId)
+        val startNanos = System.nanoTime()
+        repeat(ITERATIONS) { block(it) }
+        val elapsedNanos = System.nanoTime() - startNanos
+        val allocatedBytes = threadBean.getThreadAllocatedBytes(threadId) - startBytes
+
+        println("$name : ${elapsedNanos / ITERATIONS} ns/entry, ${allocatedBytes / ITERATIONS} B/entry")
+    }
+
+    @Test
+    fun decodeEntryFields() {
+        measure("AtomFieldDecoder") { decodeWithDecoders(it) }
+        measure("SimpleDateFormat + split") { decodeWithStrings(it) }
+        println("sink : $sink")
+    }
+}
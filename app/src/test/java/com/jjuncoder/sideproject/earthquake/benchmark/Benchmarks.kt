@@ -0,0 +1,18 @@
+package com.jjuncoder.sideproject.earthquake.benchmark
+
+import org.junit.Assume
+
+/**
+ * Benchmarks only print their results, so they are skipped unless the build is run with `-Pbenchmark`,
+ * e.g. `./gradlew testDebugUnitTest -Pbenchmark --tests '*Benchmark' -i`
+ */
+object Benchmarks {
+    const val PROPERTY = "benchmark"
+
+    /**
+     * Called from a benchmark's `@BeforeClass`, so a skipped class does not even build its inputs.
+     */
+    fun assumeEnabled() {
+        Assume.assumeTrue("benchmarks run with -P$PROPERTY", System.getProperty(PROPERTY) != null)
+    }
+}
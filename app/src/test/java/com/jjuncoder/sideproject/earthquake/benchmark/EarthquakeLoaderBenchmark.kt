@@ -0,0 +1,159 @@
+package com.jjuncoder.sideproject.earthquake.benchmark
+
+import com.jjuncoder.sideproject.earthquake.EarthquakeDataLoader
+import com.jjuncoder.sideproject.earthquake.FeedSpec
+import com.jjuncoder.sideproject.earthquake.RetryPolicy
+import com.jjuncoder.sideproject.earthquake.parser.DomFeedParser
+import com.jjuncoder.sideproject.earthquake.parser.EarthquakeFeedParser
+import com.jjuncoder.sideproject.earthquake.parser.GeoJsonFeedParser
+import com.jjuncoder.sideproject.earthquake.parser.PullFeedParser
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.runBlocking
+import org.junit.BeforeClass
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.kxml2.io.KXmlParser
+import java.io.InputStream
+import java.lang.management.ManagementFactory
+import java.util.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Parse throughput, allocation per entry and end-to-end load latency of the earthquake pipeline,
+ * on the recorded feed and on synthetic feeds of 10, 1k and 100k entries.
+ * Results are printed, e.g. `./gradlew testDebugUnitTest -Pbenchmark --tests '*EarthquakeLoaderBenchmark' -i`
+ */
+class EarthquakeLoaderBenchmark {
+    companion object {
+        @BeforeClass
+        @JvmStatic
+        fun assumeEnabled() = Benchmarks.assumeEnabled()
+
+        private val SIZES = intArrayOf(10, 1_000, 100_000)
+        private const val ENTRIES_PER_RUN = 200_000
+        private const val LOAD_RUNS = 5
+
+        // the DOM parser keeps the whole document, 100k entries is not worth the heap
+        private const val DOM_MAX_ENTRIES = 1_000
+    }
+
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private val recordedFeed = javaClass.getResourceAsStream("/feed/2.5_day.atom")!!.use { it.readBytes() }
+    private val recordedGeoJsonFeed = javaClass.getResourceAsStream("/feed/2.5_day.geojson")!!.use { it.readBytes() }
+    private val pullParser = PullFeedParser { KXmlParser() }
+    private val geoJsonParser = GeoJsonFeedParser()
+    private var sink = 0L
+
+    private fun allocatedBytes(): Long {
+        val threadBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().id)
+    }
+
+    private fun parseAll(parser: EarthquakeFeedParser, open: () -> InputStream): Int =
+        open().use { input ->
+            var count = 0
+            parser.parse(input).forEach {
+                sink += it.updated
+                count++
+            }
+            count
+        }
+
+    private fun measureParse(name: String, parser: EarthquakeFeedParser, bytes: Long, open: () -> InputStream) {
+        val entries = parseAll(parser, open)
+        val runs = maxOf(1, ENTRIES_PER_RUN / entries)
+        repeat(runs) { parseAll(parser, open) }
+
+        val startBytes = allocatedBytes()
+        val startNanos = System.nanoTime()
+        repeat(runs) { parseAll(parser, open) }
+        val elapsedNanos = System.nanoTime() - startNanos
+        val allocated = allocatedBytes() - startBytes
+
+        val parsedEntries = entries.toLong() * runs
+        val megabytesPerSecond = bytes * runs * 1_000.0 / elapsedNanos
+        println(String.format(Locale.US, "parse %-6s %7d entries : %8.2f us/entry, %7.1f MB/s, %6d B/entry",
+            name, entries, elapsedNanos / 1_000.0 / parsedEntries, megabytesPerSecond, allocated / parsedEntries))
+    }
+
+    @Test
+    fun parseThroughput() {
+        measureParse("pull", pullParser, recordedFeed.size.toLong()) { recordedFeed.inputStream() }
+        measureParse("dom", DomFeedParser(), recordedFeed.size.toLong()) { recordedFeed.inputStream() }
+
+        for (size in SIZES) {
+            if (size <= DOM_MAX_ENTRIES) {
+                val bytes = SyntheticFeed(size).toByteArray()
+                measureParse("pull", pullParser, bytes.size.toLong()) { bytes.inputStream() }
+                measureParse("dom", DomFeedParser(), bytes.size.toLong()) { bytes.inputStream() }
+            } else {
+                val file = SyntheticFeed(size).writeTo(temporaryFolder.newFile())
+                measureParse("pull", pullParser, file.length()) { file.inputStream().buffered() }
+            }
+        }
+        println("sink : $sink")
+    }
+
+    /**
+     * The same earthquakes as Atom and as GeoJSON: payload size, parse time and allocations.
+     */
+    @Test
+    fun atomVersusGeoJson() {
+        println(String.format(Locale.US, "recorded : atom %d B, geojson %d B", recordedFeed.size, recordedGeoJsonFeed.size))
+        measureParse("atom", pullParser, recordedFeed.size.toLong()) { recordedFeed.inputStream() }
+        measureParse("json", geoJsonParser, recordedGeoJsonFeed.size.toLong()) { recordedGeoJsonFeed.inputStream() }
+
+        for (size in SIZES) {
+            val atom = SyntheticFeed(size).writeTo(temporaryFolder.newFile())
+            val geoJson = SyntheticFeed(size, FeedSpec.Format.GEOJSON).writeTo(temporaryFolder.newFile())
+            println(String.format(Locale.US, "%d entries : atom %d B/entry, geojson %d B/entry",
+                size, atom.length() / size, geoJson.length() / size))
+            measureParse("atom", pullParser, atom.length()) { atom.inputStream().buffered() }
+            measureParse("json", geoJsonParser, geoJson.length()) { geoJson.inputStream().buffered() }
+        }
+        println("sink : $sink")
+    }
+
+    private fun measureLoad(name: String, server: LocalFeedServer, spec: FeedSpec) = runBlocking {
+        val complete = LongArray(LOAD_RUNS)
+        val firstBatch = LongArray(LOAD_RUNS)
+        var entries = 0
+        repeat(LOAD_RUNS) { run ->
+            val startNanos = System.nanoTime()
+            entries = 0
+            val parser = if (spec.format == FeedSpec.Format.GEOJSON) geoJsonParser else pullParser
+            EarthquakeDataLoader.loadBatches(spec, parser = parser, retryPolicy = RetryPolicy.NONE).collect {
+                if (entries == 0) firstBatch[run] = System.nanoTime() - startNanos
+                entries += it.size
+            }
+            complete[run] = System.nanoTime() - startNanos
+        }
+        firstBatch.sort()
+        complete.sort()
+        println(String.format(Locale.US, "load %-26s %7d entries : first batch %7.1f ms, complete %8.1f ms (median of %d, %d requests)",
+            name, entries, TimeUnit.NANOSECONDS.toMicros(firstBatch[LOAD_RUNS / 2]) / 1_000.0,
+            TimeUnit.NANOSECONDS.toMicros(complete[LOAD_RUNS / 2]) / 1_000.0, LOAD_RUNS, server.requestCount.get()))
+    }
+
+    @Test
+    fun loadLatency() {
+        LocalFeedServer().use { server ->
+            measureLoad("recorded", server, server.serve("recorded", recordedFeed))
+            for (size in SIZES) {
+                val file = SyntheticFeed(size).writeTo(temporaryFolder.newFile())
+                measureLoad("synthetic", server, server.serve("synthetic_$size", file))
+            }
+        }
+        // a slow mobile link: 150 ms to the first byte, 256 KB/s
+        LocalFeedServer(latencyMillis = 150, bytesPerSecond = 256 * 1024).use { server ->
+            for (size in intArrayOf(10, 1_000)) {
+                measureLoad("synthetic, 150 ms, 256 KB/s", server, server.serve("slow_$size", SyntheticFeed(size).toByteArray()))
+                val geoJson = SyntheticFeed(size, FeedSpec.Format.GEOJSON).toByteArray()
+                measureLoad("geojson, 150 ms, 256 KB/s", server, server.serve("slow_$size", geoJson, FeedSpec.Format.GEOJSON))
+            }
+        }
+    }
+}
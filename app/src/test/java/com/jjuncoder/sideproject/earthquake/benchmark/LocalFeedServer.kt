@@ -0,0 +1,95 @@
+package com.jjuncoder.sideproject.earthquake.benchmark
+
+import com.jjuncoder.sideproject.earthquake.FeedSpec
+import com.sun.net.httpserver.HttpServer
+import java.io.Closeable
+import java.io.File
+import java.io.InputStream
+import java.io.OutputStream
+import java.net.HttpURLConnection
+import java.net.InetSocketAddress
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Stand-in for earthquake.usgs.gov on the loopback interface.
+ * @param latencyMillis delay before the response headers are sent.
+ * @param bytesPerSecond body throughput, 0 for as fast as the socket allows.
+ */
+class LocalFeedServer(
+    private val latencyMillis: Long = 0,
+    private val bytesPerSecond: Long = 0
+) : Closeable {
+    companion object {
+        private const val CHUNK_SIZE = 8 * 1024
+    }
+
+    private class Body(val length: Long, val open: () -> InputStream)
+
+    private val bodies = ConcurrentHashMap<String, Body>()
+    private val executor = Executors.newCachedThreadPool()
+    private val server = HttpServer.create(InetSocketAddress("127.0.0.1", 0), 0)
+
+    val requestCount = AtomicInteger()
+
+    init {
+        server.createContext("/") { exchange ->
+            requestCount.incrementAndGet()
+            try {
+                if (latencyMillis > 0) {
+                    Thread.sleep(latencyMillis)
+                }
+                val body = bodies[exchange.requestURI.path]
+                if (body == null) {
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1)
+                } else {
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length)
+                    body.open().use { input -> copyThrottled(input, exchange.responseBody) }
+                }
+            } finally {
+                exchange.close()
+            }
+        }
+        server.executor = executor
+        server.start()
+    }
+
+    fun serve(name: String, body: ByteArray, format: FeedSpec.Format = FeedSpec.Format.ATOM): FeedSpec =
+        serve(name, format, body.size.toLong()) { body.inputStream() }
+
+    fun serve(name: String, body: File, format: FeedSpec.Format = FeedSpec.Format.ATOM): FeedSpec =
+        serve(name, format, body.length()) { body.inputStream() }
+
+    private fun serve(name: String, format: FeedSpec.Format, length: Long, open: () -> InputStream): FeedSpec {
+        val path = "/$name${format.extension}"
+        bodies[path] = Body(length, open)
+        return FeedSpec(name, "http://127.0.0.1:${server.address.port}$path", format)
+    }
+
+    private fun copyThrottled(input: InputStream, output: OutputStream) {
+        val buffer = ByteArray(CHUNK_SIZE)
+        val startNanos = System.nanoTime()
+        var sent = 0L
+        while (true) {
+            val read = input.read(buffer)
+            if (read < 0) break
+            output.write(buffer, 0, read)
+            sent += read
+            if (bytesPerSecond > 0) {
+                output.flush()
+                val dueNanos = sent * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond
+                val aheadNanos = dueNanos - (System.nanoTime() - startNanos)
+                if (aheadNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(aheadNanos)
+                }
+            }
+        }
+    }
+
+    override fun close() {
+        server.stop(0)
+        executor.shutdownNow()
+    }
+}
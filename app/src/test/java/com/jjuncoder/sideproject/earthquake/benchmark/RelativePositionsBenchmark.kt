@@ -0,0 +1,65 @@
+package com.jjuncoder.sideproject.earthquake.benchmark
+
+import com.jjuncoder.sideproject.earthquake.geo.GeoMath
+import com.jjuncoder.sideproject.earthquake.geo.RelativePositions
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import com.jjuncoder.sideproject.earthquake.model.EarthquakeDataset
+import org.junit.BeforeClass
+import org.junit.Test
+import java.util.*
+import kotlin.math.atan2
+import kotlin.math.cos
+import kotlin.math.sin
+
+/**
+ * Distance and bearing of 20k synthetic events from one position, batch pass against distance and bearing calls per row.
+ * Results are printed, e.g. `./gradlew testDebugUnitTest -Pbenchmark --tests '*RelativePositionsBenchmark' -i`
+ */
+class RelativePositionsBenchmark {
+    companion object {
+        @BeforeClass
+        @JvmStatic
+        fun assumeEnabled() = Benchmarks.assumeEnabled()
+
+        private const val EVENTS = 20_000
+        private const val ROUNDS = 50
+    }
+
+    private val random = Random(42)
+    private val dataset = EarthquakeDataset.of(List(EVENTS) {
+        Earthquake("id$it", it.toLong(), "place", random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180, 2.5)
+    })
+    private var sink = 0.0
+
+    private fun measure(name: String, block: (Double, Double) -> Double) {
+        repeat(ROUNDS) { sink += block(it - 25.0, it * 3.0) }
+        val startNanos = System.nanoTime()
+        repeat(ROUNDS) { sink += block(it - 20.0, it * 2.0) }
+        val elapsedNanos = System.nanoTime() - startNanos
+        println(String.format(Locale.US, "%-30s : %8.3f ms/list, %6.1f ns/row", name, elapsedNanos / 1e6 / ROUNDS, elapsedNanos.toDouble() / ROUNDS / EVENTS))
+    }
+
+    @Test
+    fun batchVersusPerRow() {
+        measure("batch") { latitude, longitude ->
+            RelativePositions.compute(dataset, latitude, longitude).distanceKm(EVENTS - 1).toDouble()
+        }
+        measure("per row") { latitude, longitude ->
+            var total = 0.0
+            dataset.forEach {
+                total += GeoMath.distanceKm(latitude, longitude, it.latitude, it.longitude)
+                total += bearingDegrees(latitude, longitude, it.latitude, it.longitude)
+            }
+            total
+        }
+    }
+
+    private fun bearingDegrees(latitude1: Double, longitude1: Double, latitude2: Double, longitude2: Double): Double {
+        val phi1 = Math.toRadians(latitude1)
+        val phi2 = Math.toRadians(latitude2)
+        val deltaLambda = Math.toRadians(longitude2 - longitude1)
+        val y = sin(deltaLambda) * cos(phi2)
+        val x = cos(phi1) * sin(phi2) - sin(phi1) * cos(phi2) * cos(deltaLambda)
+        return (Math.toDegrees(atan2(y, x)) + 360.0) % 360.0
+    }
+}
@@ -0,0 +1,76 @@
+package com.jjuncoder.sideproject.earthquake.benchmark
+
+import com.jjuncoder.sideproject.earthquake.geo.BoundingBox
+import com.jjuncoder.sideproject.earthquake.geo.EarthquakeGridIndex
+import com.jjuncoder.sideproject.earthquake.geo.GeoMath
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import org.junit.BeforeClass
+import org.junit.Test
+import java.util.*
+
+/**
+ * Radius and viewport queries over 100k synthetic events, grid index against a linear scan.
+ * Results are printed, e.g. `./gradlew testDebugUnitTest -Pbenchmark --tests '*SpatialIndexBenchmark' -i`
+ */
+class SpatialIndexBenchmark {
+    companion object {
+        @BeforeClass
+        @JvmStatic
+        fun assumeEnabled() = Benchmarks.assumeEnabled()
+
+        private const val EVENTS = 100_000
+        private const val QUERIES = 2_000
+    }
+
+    private val random = Random(42)
+    private val earthquakes = List(EVENTS) {
+        Earthquake("id$it", it.toLong(), "place", random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180, 1.0 + random.nextInt(70) / 10.0)
+    }
+    private val centers = List(QUERIES) { doubleArrayOf(random.nextDouble() * 140 - 70, random.nextDouble() * 360 - 180) }
+    private var sink = 0
+
+    private fun measure(name: String, queries: Int, block: (Int) -> Int) {
+        repeat(queries) { sink += block(it) }
+        val startNanos = System.nanoTime()
+        var results = 0L
+        repeat(queries) { results += block(it) }
+        val elapsedNanos = System.nanoTime() - startNanos
+        println(String.format(Locale.US, "%-40s : %9.2f us/query, %6d results/query", name, elapsedNanos / 1_000.0 / queries, results / queries))
+    }
+
+    @Test
+    fun radiusAndViewportQueries() {
+        val buildStart = System.nanoTime()
+        val index = EarthquakeGridIndex()
+        earthquakes.forEach { index.add(it) }
+        println(String.format(Locale.US, "build %d events one by one : %.1f ms", EVENTS, (System.nanoTime() - buildStart) / 1e6))
+
+        val out = ArrayList<Earthquake>()
+        for (radiusKm in doubleArrayOf(100.0, 500.0, 2_000.0)) {
+            measure("grid, within $radiusKm km", QUERIES) {
+                val (latitude, longitude) = centers[it]
+                out.clear()
+                index.withinRadius(latitude, longitude, radiusKm, out).size
+            }
+            measure("linear scan, within $radiusKm km", QUERIES / 20) {
+                val (latitude, longitude) = centers[it]
+                earthquakes.count { e -> GeoMath.distanceKm(latitude, longitude, e.latitude, e.longitude) <= radiusKm }
+            }
+        }
+
+        for (span in doubleArrayOf(5.0, 30.0)) {
+            val boxes = centers.map { (latitude, longitude) ->
+                BoundingBox(latitude - span / 2, GeoMath.normalizeLongitude(longitude - span), latitude + span / 2, GeoMath.normalizeLongitude(longitude + span))
+            }
+            measure("grid, viewport $span x ${span * 2} deg", QUERIES) {
+                out.clear()
+                index.inBoundingBox(boxes[it], out).size
+            }
+            measure("linear scan, viewport $span x ${span * 2} deg", QUERIES / 20) {
+                val box = boxes[it]
+                earthquakes.count { e -> box.contains(e.latitude, e.longitude) }
+            }
+        }
+        println("sink : $sink")
+    }
+}
@@ -0,0 +1,120 @@
+package com.jjuncoder.sideproject.earthquake.benchmark
+
+import com.jjuncoder.sideproject.earthquake.FeedSpec
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.OutputStream
+import java.io.Writer
+import java.time.Instant
+import java.time.ZoneOffset
+import java.time.format.DateTimeFormatter
+import java.util.*
+
+/**
+ * USGS shaped feed with [entryCount] entries, newest first, in Atom or GeoJSON.
+ * Every value comes from [seed], so two runs parse exactly the same bytes
+ * and both formats of the same seed describe the same earthquakes.
+ */
+class SyntheticFeed(
+    private val entryCount: Int,
+    private val format: FeedSpec.Format = FeedSpec.Format.ATOM,
+    private val seed: Long = 42,
+    private val newestMillis: Long = Instant.parse("2021-03-20T10:00:00Z").toEpochMilli()
+) {
+    companion object {
+        private val TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC)
+        private val DIRECTIONS = arrayOf("N", "NNE", "NE", "E", "SE", "S", "SW", "W", "NW", "WNW", "SSW")
+        private val PLACES = arrayOf(
+            "Katsuura, Japan", "Cantwell, Alaska", "Namie, Japan", "Indios, Puerto Rico",
+            "The Geysers, CA", "Pisco, Peru", "Volcano, Hawaii", "Ridgecrest, CA"
+        )
+        private val NETWORKS = arrayOf("us", "ak", "nc", "ci", "hv", "pr")
+    }
+
+    private class Event(
+        val network: String,
+        val code: String,
+        val updatedMillis: Long,
+        val magnitude: Double,
+        val latitude: Double,
+        val longitude: Double,
+        val depthMeters: Int,
+        val place: String
+    ) {
+        val timestamp: String
+            get() = TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(updatedMillis))
+    }
+
+    private fun events(): Sequence<Event> = sequence {
+        val random = Random(seed)
+        var updated = newestMillis
+        repeat(entryCount) { index ->
+            updated -= 1_000 + random.nextInt(120_000)
+            val network = NETWORKS[random.nextInt(NETWORKS.size)]
+            val magnitude = 1.0 + random.nextInt(70) / 10.0
+            val latitude = Math.round((random.nextDouble() * 180.0 - 90.0) * 10_000) / 10_000.0
+            val longitude = Math.round((random.nextDouble() * 360.0 - 180.0) * 10_000) / 10_000.0
+            val depth = random.nextInt(700_000)
+            val place = "${1 + random.nextInt(200)} km ${DIRECTIONS[random.nextInt(DIRECTIONS.size)]} of ${PLACES[random.nextInt(PLACES.size)]}"
+            yield(Event(network, String.format(Locale.US, "%08d", index), updated, magnitude, latitude, longitude, depth, place))
+        }
+    }
+
+    fun writeTo(output: OutputStream) {
+        val writer = output.bufferedWriter()
+        when (format) {
+            FeedSpec.Format.ATOM -> writeAtom(writer)
+            FeedSpec.Format.GEOJSON -> writeGeoJson(writer)
+        }
+        writer.flush()
+    }
+
+    private fun writeAtom(writer: Writer) {
+        writer.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n")
+        writer.write("<feed xmlns=\"http://www.w3.org/2005/Atom\" xmlns:georss=\"http://www.georss.org/georss\">\n")
+        writer.write("<title>Synthetic Earthquakes, $entryCount entries</title>\n")
+        writer.write("<updated>${TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(newestMillis))}</updated>\n")
+        events().forEach { event ->
+            event.apply {
+                val timestamp = timestamp
+                writer.write("<entry><id>urn:earthquake-usgs-gov:$network:$code</id>")
+                writer.write(String.format(Locale.US, "<title>M %.1f - %s</title>", magnitude, place))
+                writer.write("<updated>$timestamp</updated>")
+                writer.write("<link rel=\"alternate\" type=\"text/html\" href=\"https://earthquake.usgs.gov/earthquakes/eventpage/$network$code\"/>")
+                writer.write("<summary type=\"html\"><![CDATA[<dl><dt>Time</dt><dd>$timestamp</dd><dt>Depth</dt><dd>${depthMeters / 1000.0} km</dd></dl>]]></summary>")
+                writer.write(String.format(Locale.US, "<georss:point>%.4f %.4f</georss:point>", latitude, longitude))
+                writer.write("<georss:elev>-$depthMeters</georss:elev>")
+                writer.write("<category label=\"Magnitude\" term=\"Magnitude ${magnitude.toInt()}\"/><category label=\"Contributor\" term=\"$network\"/></entry>\n")
+            }
+        }
+        writer.write("</feed>\n")
+    }
+
+    private fun writeGeoJson(writer: Writer) {
+        writer.write("{\"type\":\"FeatureCollection\",\"metadata\":{\"generated\":$newestMillis,")
+        writer.write("\"title\":\"Synthetic Earthquakes, $entryCount entries\",\"status\":200,\"count\":$entryCount},\"features\":[")
+        events().forEachIndexed { index, event ->
+            event.apply {
+                if (index > 0) writer.write(",")
+                writer.write(String.format(Locale.US, "{\"type\":\"Feature\",\"properties\":{\"mag\":%.1f,\"place\":\"%s\",", magnitude, place))
+                writer.write("\"time\":${updatedMillis - 60_000},\"updated\":$updatedMillis,\"tz\":null,")
+                writer.write("\"url\":\"https://earthquake.usgs.gov/earthquakes/eventpage/$network$code\",")
+                writer.write("\"detail\":\"https://earthquake.usgs.gov/earthquakes/feed/v1.0/detail/$network$code.geojson\",")
+                writer.write("\"felt\":null,\"cdi\":null,\"mmi\":null,\"alert\":null,\"status\":\"reviewed\",\"tsunami\":0,")
+                writer.write("\"net\":\"$network\",\"code\":\"$code\",\"ids\":\",$network$code,\",\"sources\":\",$network,\",")
+                writer.write("\"magType\":\"ml\",\"type\":\"earthquake\",")
+                writer.write(String.format(Locale.US, "\"title\":\"M %.1f - %s\"},", magnitude, place))
+                writer.write(String.format(Locale.US, "\"geometry\":{\"type\":\"Point\",\"coordinates\":[%.4f,%.4f,%.3f]},", longitude, latitude, depthMeters / 1000.0))
+                writer.write("\"id\":\"$network$code\"}\n")
+            }
+        }
+        writer.write("]}\n")
+    }
+
+    fun toByteArray(): ByteArray = ByteArrayOutputStream().also { writeTo(it) }.toByteArray()
+
+    fun writeTo(file: File): File {
+        file.outputStream().buffered().use { writeTo(it) }
+        return file
+    }
+}
@@ -0,0 +1,57 @@
+package com.jjuncoder.sideproject.earthquake.benchmark
+
+import com.jjuncoder.sideproject.earthquake.EarthquakeDataLoader
+import com.jjuncoder.sideproject.earthquake.FeedSpec
+import com.jjuncoder.sideproject.earthquake.parser.DomFeedParser
+import com.jjuncoder.sideproject.earthquake.parser.GeoJsonFeedParser
+import com.jjuncoder.sideproject.earthquake.parser.PullFeedParser
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.kxml2.io.KXmlParser
+
+class SyntheticFeedTest {
+    private val parser = PullFeedParser { KXmlParser() }
+
+    @Test
+    fun generatedFeed_parsesLikeRecordedOne() {
+        val bytes = SyntheticFeed(1_000).toByteArray()
+
+        val pull = parser.parse(bytes.inputStream()).toList()
+        val dom = DomFeedParser().parse(bytes.inputStream()).toList()
+
+        assertEquals(1_000, pull.size)
+        assertEquals(dom, pull)
+        assertEquals(pull.sortedByDescending { it.updated }, pull)
+        assertTrue(pull.all { it.magnitude in 1.0..8.0 && it.details.isNotEmpty() })
+    }
+
+    @Test
+    fun generatedFeed_describesSameEventsInBothFormats() {
+        val atom = parser.parse(SyntheticFeed(500).toByteArray().inputStream()).toList()
+        val geoJson = GeoJsonFeedParser().parse(SyntheticFeed(500, FeedSpec.Format.GEOJSON).toByteArray().inputStream()).toList()
+
+        assertEquals(atom, geoJson)
+    }
+
+    @Test
+    fun generatedFeed_isReproducible() {
+        assertArrayEquals(SyntheticFeed(100).toByteArray(), SyntheticFeed(100).toByteArray())
+    }
+
+    @Test
+    fun localFeedServer_appliesLatency() {
+        LocalFeedServer(latencyMillis = 200).use { server ->
+            val spec = server.serve("feed", SyntheticFeed(10).toByteArray())
+
+            val startNanos = System.nanoTime()
+            val result = runBlocking { EarthquakeDataLoader.loadFeeds(listOf(spec), parser = parser) }
+            val elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000
+
+            assertEquals(10, result.earthquakes.size)
+            assertTrue("elapsed $elapsedMillis ms", elapsedMillis >= 200)
+        }
+    }
+}
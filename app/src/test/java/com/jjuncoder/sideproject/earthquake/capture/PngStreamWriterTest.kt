@@ -0,0 +1,92 @@
+package com.jjuncoder.sideproject.earthquake.capture
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.util.*
+import javax.imageio.ImageIO
+
+class PngStreamWriterTest {
+    private val width = 37
+    private val height = 101
+    private val random = Random(3)
+    private val pixels = IntArray(width * height) { random.nextInt() or 0xFF000000.toInt() }
+
+    private fun decode(bytes: ByteArray) = ImageIO.read(ByteArrayInputStream(bytes))!!
+
+    @Test
+    fun writtenInSlices_decodesToSamePixels() {
+        val output = ByteArrayOutputStream()
+        PngStreamWriter(output, width, height).use { png ->
+            // uneven slices, like the last tile of a list
+            var row = 0
+            for (rows in listOf(1, 32, 32, 32, 4)) {
+                png.writeRows(pixels, row * width, width, rows)
+                row += rows
+            }
+        }
+
+        val image = decode(output.toByteArray())
+        assertEquals(width, image.width)
+        assertEquals(height, image.height)
+        for (y in 0 until height) {
+            for (x in 0 until width) {
+                assertEquals("pixel $x, $y", pixels[y * width + x], image.getRGB(x, y))
+            }
+        }
+    }
+
+    @Test
+    fun strideSkipsPaddingPixels() {
+        val stride = width + 3
+        val padded = IntArray(stride * height) { if (it % stride < width) pixels[it / stride * width + it % stride] else 0 }
+        val output = ByteArrayOutputStream()
+        PngStreamWriter(output, width, height).use { it.writeRows(padded, 0, stride, height) }
+
+        val image = decode(output.toByteArray())
+        assertEquals(pixels.last(), image.getRGB(width - 1, height - 1))
+        assertEquals(pixels[width], image.getRGB(0, 1))
+    }
+
+    @Test
+    fun tallFlatImageStaysSmall() {
+        val row = IntArray(1080) { if (it in 40..1040) 0xFF202020.toInt() else -1 }
+        val output = ByteArrayOutputStream()
+        PngStreamWriter(output, row.size, 20_000).use { png -> repeat(20_000) { png.writeRows(row, 0, row.size, 1) } }
+
+        assertTrue("${output.size()} bytes", output.size() < 200_000)
+        assertEquals(20_000, decode(output.toByteArray()).height)
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun closingBeforeLastRowFails() {
+        PngStreamWriter(ByteArrayOutputStream(), width, height).use { it.writeRows(pixels, 0, width, height - 1) }
+    }
+
+    @Test
+    fun failureWhileWritingStillReleasesStream() {
+        var closed = false
+        val output = object : ByteArrayOutputStream() {
+            override fun close() {
+                closed = true
+            }
+        }
+        val failure = IllegalArgumentException("tile failed")
+
+        val thrown = try {
+            PngStreamWriter(output, width, height).use {
+                it.writeRows(pixels, 0, width, 10)
+                throw failure
+            }
+        } catch (e: IllegalArgumentException) {
+            e
+        }
+
+        assertSame(failure, thrown)
+        assertTrue(closed)
+        assertTrue(thrown.suppressed.single() is IllegalStateException)
+    }
+}
@@ -0,0 +1,112 @@
+package com.jjuncoder.sideproject.earthquake.db
+
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import com.jjuncoder.sideproject.earthquake.model.EarthquakeDataset
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.nio.ByteBuffer
+import java.util.*
+import java.util.zip.CRC32
+
+class EarthquakeSnapshotTest {
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private val random = Random(5)
+    private val dataset = EarthquakeDataset.of(List(1_000) {
+        Earthquake(
+            "urn:earthquake-usgs-gov:us:$it", 1_616_233_712_040L - it * 60_000L, "${it % 17} km NNE of Ōfunato, Japan",
+            random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180, if (it % 50 == 0) Double.NaN else random.nextInt(70) / 10.0
+        )
+    })
+
+    private fun snapshotFile() = temporaryFolder.root.resolve("snapshot.bin")
+
+    @Test
+    fun roundTrip() {
+        val snapshot = EarthquakeSnapshot(snapshotFile())
+        snapshot.write(dataset)
+
+        val read = snapshot.read()!!
+
+        assertEquals(dataset, read)
+        assertEquals(dataset.details(3), read.details(3))
+
+        snapshot.write(EarthquakeDataset.EMPTY)
+        assertEquals(EarthquakeDataset.EMPTY, snapshot.read())
+    }
+
+    @Test
+    fun missingFileReadsAsNull() {
+        assertNull(EarthquakeSnapshot(snapshotFile()).read())
+    }
+
+    @Test
+    fun corruptFileReadsAsNullAndIsDeleted() {
+        val file = snapshotFile()
+        EarthquakeSnapshot(file).write(dataset)
+        val bytes = file.readBytes()
+        bytes[bytes.size / 2] = (bytes[bytes.size / 2] + 1).toByte()
+        file.writeBytes(bytes)
+
+        assertNull(EarthquakeSnapshot(file).read())
+        assertFalse(file.exists())
+    }
+
+    @Test
+    fun truncatedFileReadsAsNull() {
+        val file = snapshotFile()
+        EarthquakeSnapshot(file).write(dataset)
+        file.writeBytes(file.readBytes().copyOf(10))
+
+        assertNull(EarthquakeSnapshot(file).read())
+    }
+
+    @Test
+    fun newerMajorVersionIsNotRead() {
+        val file = snapshotFile()
+        EarthquakeSnapshot(file).write(dataset)
+        val bytes = file.readBytes()
+        ByteBuffer.wrap(bytes).putShort(4, 2)
+        file.writeBytes(bytes)
+
+        assertNull(EarthquakeSnapshot(file).read())
+    }
+
+    @Test
+    fun newerMinorVersionWithLargerHeaderAndUnknownSectionIsRead() {
+        val file = snapshotFile()
+        EarthquakeSnapshot(file).write(dataset)
+        val original = ByteBuffer.wrap(file.readBytes())
+
+        // what a later writer may produce : 8 more header bytes and one more section
+        val oldHeaderSize = original.getInt(8)
+        val newHeaderSize = oldHeaderSize + 8
+        val sectionCount = original.getInt(oldHeaderSize)
+        val oldTableSize = 4 + sectionCount * 12
+        val shift = 8 + 12
+        val extraSection = byteArrayOf(1, 2, 3, 4)
+        val upgraded = ByteBuffer.allocate(original.capacity() + shift + extraSection.size)
+        upgraded.put(original.array(), 0, oldHeaderSize)
+        upgraded.putShort(6, 7)
+        upgraded.putInt(8, newHeaderSize)
+        upgraded.position(newHeaderSize)
+        upgraded.putInt(sectionCount + 1)
+        for (index in 0 until sectionCount) {
+            val entry = oldHeaderSize + 4 + index * 12
+            upgraded.putInt(original.getInt(entry)).putInt(original.getInt(entry + 4) + shift).putInt(original.getInt(entry + 8))
+        }
+        upgraded.putInt(99).putInt(original.capacity() + shift).putInt(extraSection.size)
+        upgraded.put(original.array(), oldHeaderSize + oldTableSize, original.capacity() - oldHeaderSize - oldTableSize)
+        upgraded.put(extraSection)
+        val crc = CRC32().apply { update(upgraded.array(), newHeaderSize, upgraded.capacity() - newHeaderSize) }
+        upgraded.putInt(16, crc.value.toInt())
+        file.writeBytes(upgraded.array())
+
+        assertEquals(dataset, EarthquakeSnapshot(file).read())
+    }
+}
@@ -0,0 +1,64 @@
+package com.jjuncoder.sideproject.earthquake.geo
+
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import com.jjuncoder.sideproject.earthquake.model.EarthquakeDataset
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.*
+
+class EarthquakeClustersTest {
+    private fun earthquake(id: String, latitude: Double, longitude: Double, magnitude: Double) =
+        Earthquake(id, 0, "place", latitude, longitude, magnitude)
+
+    @Test
+    fun cluster_groupsEventsOfOneCell() {
+        val dataset = EarthquakeDataset.of(listOf(
+            earthquake("a", 35.1, 139.1, 2.0),
+            earthquake("b", 35.3, 139.3, 5.5),
+            earthquake("c", -33.4, -70.6, Double.NaN),
+            earthquake("d", 35.2, 139.2, Double.NaN)
+        ))
+
+        // 10 degree cells
+        val clusters = EarthquakeClusters.cluster(dataset, 36)
+
+        assertEquals(2, clusters.size)
+        val (tokyo, santiago) = (0 until clusters.size).partition { clusters.count(it) == 3 }.let { it.first.single() to it.second.single() }
+        assertEquals(5.5f, clusters.maxMagnitude(tokyo))
+        assertEquals(EarthquakeClusters.worldX(139.2), clusters.x(tokyo).toDouble(), 1e-6)
+        assertEquals(EarthquakeClusters.worldY(35.2), clusters.y(tokyo).toDouble(), 1e-6)
+        assertEquals(1, clusters.count(santiago))
+        assertTrue(clusters.maxMagnitude(santiago).isNaN())
+    }
+
+    @Test
+    fun cluster_countsEveryEventOnce() {
+        val random = Random(17)
+        val dataset = EarthquakeDataset.of(List(10_000) {
+            earthquake("id$it", random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180, random.nextInt(80) / 10.0)
+        })
+
+        for (columns in listOf(2, 16, 256, 4096)) {
+            val clusters = EarthquakeClusters.cluster(dataset, columns)
+
+            assertEquals(dataset.size, (0 until clusters.size).sumBy { clusters.count(it) })
+            assertTrue(clusters.size <= columns * columns / 2)
+        }
+    }
+
+    @Test
+    fun cluster_edgesOfTheWorld() {
+        val dataset = EarthquakeDataset.of(listOf(
+            earthquake("north", 90.0, 180.0, 1.0),
+            earthquake("south", -90.0, -180.0, 1.0)
+        ))
+
+        val clusters = EarthquakeClusters.cluster(dataset, 4)
+
+        assertEquals(2, clusters.size)
+        for (i in 0 until clusters.size) {
+            assertTrue(clusters.x(i) in 0f..1f && clusters.y(i) in 0f..1f)
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.jjuncoder.sideproject.earthquake.geo
+
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.*
+
+class EarthquakeGridIndexTest {
+    private val random = Random(7)
+    private val earthquakes = List(5_000) {
+        Earthquake("id$it", it.toLong(), "place", random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180, 2.5)
+    }
+    private val index = EarthquakeGridIndex().apply { addAll(earthquakes) }
+
+    private fun ids(list: List<Earthquake>) = list.map { it.id }.toSortedSet()
+
+    @Test
+    fun distanceKm_oneDegreeOfLatitude() {
+        assertEquals(GeoMath.KM_PER_DEGREE_LATITUDE, GeoMath.distanceKm(10.0, 20.0, 11.0, 20.0), 1e-6)
+        assertEquals(0.0, GeoMath.distanceKm(35.0, 139.0, 35.0, 139.0), 0.0)
+    }
+
+    @Test
+    fun withinRadius_matchesLinearScan() {
+        val centers = listOf(
+            0.0 to 0.0, 35.6 to 139.7, 89.5 to 10.0, -89.9 to -100.0, 10.0 to 179.8, -20.0 to -179.5
+        )
+        for ((latitude, longitude) in centers) {
+            for (radiusKm in doubleArrayOf(50.0, 500.0, 3_000.0)) {
+                val expected = earthquakes.filter { GeoMath.distanceKm(latitude, longitude, it.latitude, it.longitude) <= radiusKm }
+
+                assertEquals("$latitude, $longitude, $radiusKm km", ids(expected), ids(index.withinRadius(latitude, longitude, radiusKm)))
+            }
+        }
+    }
+
+    @Test
+    fun inBoundingBox_matchesLinearScan() {
+        val boxes = listOf(
+            BoundingBox(30.0, 125.0, 45.0, 145.0),
+            BoundingBox(-10.0, 170.0, 10.0, -170.0),
+            BoundingBox(-90.0, -180.0, 90.0, 180.0)
+        )
+        for (box in boxes) {
+            val expected = earthquakes.filter { box.contains(it.latitude, it.longitude) }
+
+            assertEquals(box.toString(), ids(expected), ids(index.inBoundingBox(box)))
+        }
+    }
+
+    @Test
+    fun add_replacesEventWithSameId() {
+        val index = EarthquakeGridIndex()
+        index.add(Earthquake("a", 1, "first", 35.0, 139.0, 4.0))
+        index.add(Earthquake("a", 2, "moved", -35.0, -60.0, 4.1))
+
+        assertEquals(1, index.size)
+        assertTrue(index.withinRadius(35.0, 139.0, 100.0).isEmpty())
+        assertEquals("moved", index.withinRadius(-35.0, -60.0, 100.0).single().details)
+
+        assertTrue(index.remove("a"))
+        assertEquals(0, index.size)
+        assertTrue(index.inBoundingBox(BoundingBox(-90.0, -180.0, 90.0, 180.0)).isEmpty())
+    }
+}
@@ -0,0 +1,66 @@
+package com.jjuncoder.sideproject.earthquake.geo
+
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import com.jjuncoder.sideproject.earthquake.model.EarthquakeDataset
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.*
+
+class RelativePositionsTest {
+    private val random = Random(11)
+    private val dataset = EarthquakeDataset.of(List(2_000) {
+        Earthquake("id$it", it.toLong(), "place", random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180, 2.5)
+    })
+
+    @Test
+    fun compute_matchesDistanceKm() {
+        val positions = RelativePositions.compute(dataset, 37.5, 127.0)
+
+        assertEquals(dataset.size, positions.size)
+        dataset.forEachIndexed { index, earthquake ->
+            val expected = GeoMath.distanceKm(37.5, 127.0, earthquake.latitude, earthquake.longitude)
+            assertEquals(expected, positions.distanceKm(index).toDouble(), expected * 1e-6 + 1e-3)
+            assertEquals(index, positions.indexOf(earthquake.id))
+        }
+        assertEquals(-1, positions.indexOf("other"))
+    }
+
+    @Test
+    fun compute_bearings() {
+        val targets = EarthquakeDataset.of(listOf(
+            Earthquake("north", 0, "", 11.0, 20.0, 1.0),
+            Earthquake("east", 0, "", 10.0, 21.0, 1.0),
+            Earthquake("south", 0, "", 9.0, 20.0, 1.0),
+            Earthquake("west", 0, "", 10.0, 19.0, 1.0)
+        ))
+        val positions = RelativePositions.compute(targets, 10.0, 20.0)
+
+        assertEquals(0.0, positions.bearingDegrees(0).toDouble(), 1e-3)
+        assertEquals(90.0, positions.bearingDegrees(1).toDouble(), 0.1)
+        assertEquals(180.0, positions.bearingDegrees(2).toDouble(), 1e-3)
+        assertEquals(270.0, positions.bearingDegrees(3).toDouble(), 0.1)
+    }
+
+    @Test
+    fun compassPoint() {
+        assertEquals("N", RelativePositions.compassPoint(0f))
+        assertEquals("N", RelativePositions.compassPoint(359f))
+        assertEquals("NNE", RelativePositions.compassPoint(22.5f))
+        assertEquals("E", RelativePositions.compassPoint(95f))
+        assertEquals("SW", RelativePositions.compassPoint(225f))
+        assertEquals("NNW", RelativePositions.compassPoint(340f))
+    }
+
+    @Test
+    fun significantMoveFilter_ignoresSmallMoves() {
+        val filter = SignificantMoveFilter(thresholdKm = 1.0)
+
+        assertTrue(filter.accept(37.5, 127.0))
+        assertFalse(filter.accept(37.505, 127.0))
+        assertFalse(filter.accept(37.5, 127.005))
+        assertTrue(filter.accept(37.51, 127.0))
+        assertEquals(37.51, filter.latitude, 0.0)
+    }
+}
@@ -0,0 +1,36 @@
+package com.jjuncoder.sideproject.earthquake.model
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Test
+
+class EarthquakeDatasetTest {
+    private val earthquakes = (0 until 100).map {
+        Earthquake("id$it", 1_616_233_712_040L - it * 60_000L, "place${it % 3}", it * 0.5, -it * 0.25, it % 7 + 0.1)
+    }
+
+    @Test
+    fun rowsMatchSource() {
+        val dataset = EarthquakeDataset.of(earthquakes)
+
+        assertEquals(earthquakes.size, dataset.size)
+        assertEquals(earthquakes, dataset)
+        assertEquals(earthquakes[42].latitude, dataset.latitude(42), 0.0)
+        assertEquals(earthquakes[42].updated, dataset.updated(42))
+    }
+
+    @Test
+    fun equalDetailsAreShared() {
+        val dataset = EarthquakeDataset.Builder(1)
+            .add("a", 0L, String(charArrayOf('p', 'l', 'a', 'c', 'e')), 0.0, 0.0, 1.0)
+            .add("b", 0L, String(charArrayOf('p', 'l', 'a', 'c', 'e')), 0.0, 0.0, 1.0)
+            .build()
+
+        assertSame(dataset.details(0), dataset.details(1))
+    }
+
+    @Test(expected = IndexOutOfBoundsException::class)
+    fun getOutOfRangeThrows() {
+        EarthquakeDataset.of(earthquakes.take(3))[3]
+    }
+}
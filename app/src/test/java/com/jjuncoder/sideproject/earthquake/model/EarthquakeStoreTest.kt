@@ -0,0 +1,160 @@
+package com.jjuncoder.sideproject.earthquake.model
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.*
+
+class EarthquakeStoreTest {
+    private fun earthquake(id: String, updated: Long, magnitude: Double = 2.5) =
+        Earthquake(id, updated, "place", 35.0, 139.0, magnitude)
+
+    @Test
+    fun merge_revisionReplacesRow() {
+        val store = EarthquakeStore()
+        store.merge(listOf(earthquake("a", 10), earthquake("b", 20)))
+
+        val revised = earthquake("a", 30, magnitude = 4.1)
+        val changes = store.merge(listOf(revised))
+
+        assertEquals(emptyList<Earthquake>(), changes.inserted)
+        assertEquals(listOf(EarthquakeStore.Revision(earthquake("a", 10), revised)), changes.updated)
+        assertEquals(listOf(revised, earthquake("b", 20)), store.toList())
+        assertEquals(2, store.size)
+    }
+
+    @Test
+    fun merge_ignoresOlderAndEqualRevisions() {
+        val store = EarthquakeStore()
+        store.merge(listOf(earthquake("a", 10)))
+        val version = store.version
+
+        val changes = store.merge(listOf(earthquake("a", 5, magnitude = 9.0), earthquake("a", 10, magnitude = 9.0)))
+
+        assertTrue(changes.isEmpty)
+        assertEquals(version, changes.toVersion)
+        assertEquals(version, store.version)
+        assertEquals(2.5, store["a"]!!.magnitude, 0.0)
+    }
+
+    @Test
+    fun merge_reportsEveryIdOnce() {
+        val store = EarthquakeStore()
+        store.merge(listOf(earthquake("a", 10)))
+
+        val changes = store.merge(listOf(earthquake("b", 1), earthquake("a", 11), earthquake("b", 2), earthquake("a", 12)))
+
+        assertEquals(listOf(earthquake("b", 2)), changes.inserted)
+        assertEquals(listOf(EarthquakeStore.Revision(earthquake("a", 10), earthquake("a", 12))), changes.updated)
+        assertEquals(listOf(earthquake("a", 12), earthquake("b", 2)), store.toList())
+    }
+
+    @Test
+    fun remove() {
+        val store = EarthquakeStore()
+        store.merge(listOf(earthquake("a", 10), earthquake("b", 20)))
+
+        val changes = store.remove(listOf("a", "missing"))
+
+        assertEquals(listOf(earthquake("a", 10)), changes.removed)
+        assertEquals(listOf(earthquake("b", 20)), store.toList())
+    }
+
+    @Test
+    fun merge_evictsOldestAboveMaxCount() {
+        val store = EarthquakeStore(RetentionPolicy(maxCount = 3))
+        store.merge(listOf(earthquake("a", 10), earthquake("b", 20), earthquake("c", 30)))
+
+        val changes = store.merge(listOf(earthquake("d", 40), earthquake("e", 5)))
+
+        // "e" was inserted and evicted by the same merge
+        assertEquals(listOf(earthquake("d", 40)), changes.inserted)
+        assertEquals(listOf(earthquake("a", 10)), changes.removed)
+        assertEquals(listOf(earthquake("d", 40), earthquake("c", 30), earthquake("b", 20)), store.toList())
+        assertNull(store["a"])
+    }
+
+    @Test
+    fun evict_dropsEntriesOlderThanMaxAge() {
+        var now = 100L
+        val store = EarthquakeStore(RetentionPolicy(maxAgeMillis = 50), clock = { now })
+        val changes = store.merge(listOf(earthquake("a", 40), earthquake("b", 60), earthquake("c", 90)))
+        assertEquals(listOf("b", "c"), changes.inserted.map { it.id }.sorted())
+
+        now = 125
+        assertEquals(listOf(earthquake("b", 60)), store.evict().removed)
+        assertEquals(listOf(earthquake("c", 90)), store.toList())
+        assertTrue(store.evict().isEmpty)
+    }
+
+    @Test
+    fun minMagnitude_revisionBelowItRemovesRow() {
+        val store = EarthquakeStore(RetentionPolicy(minMagnitude = 3.0))
+        store.merge(listOf(earthquake("a", 10, magnitude = 3.5), earthquake("b", 10, magnitude = 2.0)))
+        assertEquals(listOf("a"), store.toList().map { it.id })
+
+        val changes = store.merge(listOf(earthquake("a", 20, magnitude = 2.9)))
+
+        assertEquals(listOf(earthquake("a", 10, magnitude = 3.5)), changes.removed)
+        assertEquals(0, store.size)
+    }
+
+    @Test
+    fun applyRetentionPolicy_evictsWhatItNoLongerKeeps() {
+        val store = EarthquakeStore()
+        store.merge(listOf(earthquake("a", 10, magnitude = 1.0), earthquake("b", 20, magnitude = 5.0), earthquake("c", 30, magnitude = 4.0)))
+
+        val changes = store.applyRetentionPolicy(RetentionPolicy(maxCount = 1, minMagnitude = 2.0))
+
+        assertEquals(listOf("a", "b"), changes.removed.map { it.id }.sorted())
+        assertEquals(listOf(earthquake("c", 30, magnitude = 4.0)), store.toList())
+    }
+
+    @Test
+    fun merge_onlyComparesAlongTreePathsOfChangedEntries() {
+        var comparisons = 0
+        val order = Comparator<Earthquake> { a, b ->
+            comparisons++
+            SortedEarthquakeList.NEWEST_FIRST.compare(a, b)
+        }
+        val store = EarthquakeStore(RetentionPolicy.UNLIMITED, { 0L }, SortedEarthquakeList(order))
+        store.merge(List(100_000) { earthquake("old$it", it.toLong()) })
+
+        comparisons = 0
+        val changes = store.merge(List(10) { earthquake("new$it", 200_000L + it) } + earthquake("old5", 300_000))
+
+        assertEquals(10, changes.inserted.size)
+        assertEquals(1, changes.updated.size)
+        // 12 tree operations of at most about 1.44 * log2(100_000) = 24 levels, a walk over the store would compare 100_000 rows
+        assertTrue("$comparisons comparisons", comparisons <= 12 * 25)
+        assertEquals(earthquake("old5", 300_000), store.toList().first())
+    }
+
+    @Test
+    fun changeSetsReplayedOnMirrorMatchStore() {
+        val random = Random(3)
+        val store = EarthquakeStore(RetentionPolicy(maxCount = 150, minMagnitude = 2.0))
+        val mirror = SortedEarthquakeList()
+        repeat(200) {
+            val batch = List(1 + random.nextInt(20)) {
+                earthquake("id${random.nextInt(300)}", random.nextInt(1_000).toLong(), magnitude = random.nextInt(50) / 10.0)
+            }
+            val changes = if (random.nextInt(5) == 0) {
+                store.remove(batch.map { it.id })
+            } else {
+                store.merge(batch)
+            }
+
+            // the same steps as the list adapter
+            changes.removed.forEach { assertTrue(mirror.delete(it) >= 0) }
+            changes.updated.forEach { (previous, current) ->
+                assertTrue(mirror.delete(previous) >= 0)
+                mirror.insert(current)
+            }
+            changes.inserted.forEach { mirror.insert(it) }
+
+            assertEquals(store.toList(), mirror)
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.jjuncoder.sideproject.earthquake.model
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.util.*
+
+class SortedEarthquakeListTest {
+    private fun earthquake(id: Int, updated: Long) = Earthquake("id$id", updated, "place", 35.0, 139.0, 2.5)
+
+    @Test
+    fun randomChangesMatchSortedArrayList() {
+        val random = Random(7)
+        val list = SortedEarthquakeList()
+        val expected = ArrayList<Earthquake>()
+        list.insertAll(List(500) { earthquake(it, random.nextInt(200).toLong()) }.also { expected.addAll(it) })
+        expected.sortWith(SortedEarthquakeList.NEWEST_FIRST)
+
+        repeat(5_000) { step ->
+            when (random.nextInt(4)) {
+                0, 1 -> {
+                    val earthquake = earthquake(500 + step, random.nextInt(400).toLong())
+                    val position = list.insert(earthquake)
+                    expected.add(position, earthquake)
+                }
+                2 -> if (expected.isNotEmpty()) {
+                    val earthquake = expected[random.nextInt(expected.size)]
+                    assertEquals(expected.indexOf(earthquake), list.delete(earthquake))
+                    expected.remove(earthquake)
+                }
+                else -> if (expected.isNotEmpty()) assertEquals(expected.removeAt(expected.lastIndex), list.deleteLast())
+            }
+            if (step % 250 == 0) {
+                assertEquals(expected, list)
+                assertEquals(expected, List(list.size) { list[it] })
+                expected.forEachIndexed { index, it -> assertEquals(index, list.positionOf(it)) }
+            }
+        }
+        assertEquals(expected, list)
+        assertEquals(-1, list.positionOf(earthquake(-1, 0)))
+    }
+}
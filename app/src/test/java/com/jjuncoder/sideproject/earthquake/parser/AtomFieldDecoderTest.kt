@@ -0,0 +1,96 @@
+package com.jjuncoder.sideproject.earthquake.parser
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.time.Instant
+
+class AtomFieldDecoderTest {
+    @Test
+    fun parseTimestamp_matchesInstant() {
+        listOf(
+            "2021-03-20T09:48:32.040Z",
+            "2021-03-19T22:15:37.800Z",
+            "2021-03-20T13:05:00.000Z",
+            "2020-02-29T23:59:59.999Z",
+            "2021-03-20T10:01:44Z"
+        ).forEach {
+            assertEquals(it, Instant.parse(it).toEpochMilli(), AtomFieldDecoder.parseTimestamp(it))
+        }
+    }
+
+    @Test
+    fun parseTimestamp_appliesOffset() {
+        assertEquals(
+            Instant.parse("2021-03-20T09:09:43Z").toEpochMilli(),
+            AtomFieldDecoder.parseTimestamp("2021-03-20T18:09:43+09:00")
+        )
+    }
+
+    @Test
+    fun parseTimestamp_readsRegionOfLongerText() {
+        val text = "<updated>2021-03-20T09:48:32.040Z</updated>"
+        assertEquals(
+            Instant.parse("2021-03-20T09:48:32.040Z").toEpochMilli(),
+            AtomFieldDecoder.parseTimestamp(text, 9, 33)
+        )
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun parseTimestamp_rejectsMalformedText() {
+        AtomFieldDecoder.parseTimestamp("2021-03-20 09:48:32.040Z")
+    }
+
+    @Test
+    fun parsePoint_readsLatitudeAndLongitude() {
+        val out = DoubleArray(2)
+
+        AtomFieldDecoder.parsePoint("63.3764 -150.0577", out = out)
+        assertEquals(63.3764, out[0], 0.0)
+        assertEquals(-150.0577, out[1], 0.0)
+
+        AtomFieldDecoder.parsePoint(" -13.9107 -76.2869 ", out = out)
+        assertEquals(-13.9107, out[0], 0.0)
+        assertEquals(-76.2869, out[1], 0.0)
+    }
+
+    @Test
+    fun parseDouble_matchesToDouble() {
+        listOf("34.5361", "-150.0577", "0", "7", "0.1", "-0.0001", "142.0152", "1.7976931348623157E308").forEach {
+            assertEquals(it, it.toDouble(), AtomFieldDecoder.parseDouble(it), 0.0)
+        }
+    }
+
+    @Test
+    fun parseTitle_splitsMagnitudeAndPlace() {
+        val title = "M 4.6 - 113 km SE of Katsuura, Japan"
+
+        assertEquals(4.6, AtomFieldDecoder.parseTitleMagnitude(title), 0.0)
+        assertEquals("113 km SE of Katsuura, Japan", title.substring(AtomFieldDecoder.titlePlaceStart(title)))
+    }
+
+    @Test
+    fun parseTitle_keepsHyphenatedPlace() {
+        val title = "M 2.6 - 5km NW of The Geysers, CA-Nevada border"
+
+        assertEquals(2.6, AtomFieldDecoder.parseTitleMagnitude(title), 0.0)
+        assertEquals("5km NW of The Geysers, CA-Nevada border", title.substring(AtomFieldDecoder.titlePlaceStart(title)))
+    }
+
+    @Test
+    fun parseTitle_negativeMagnitude() {
+        val title = "M -0.4 - 10km NE of Pahala, Hawaii"
+
+        assertEquals(-0.4, AtomFieldDecoder.parseTitleMagnitude(title), 0.0)
+        assertEquals("10km NE of Pahala, Hawaii", title.substring(AtomFieldDecoder.titlePlaceStart(title)))
+        assertTrue(AtomFieldDecoder.parseTitleMagnitude("M - 10km NE of Pahala, Hawaii").isNaN())
+    }
+
+    @Test
+    fun parseTitle_withoutMagnitude() {
+        val title = "South Sandwich Islands region"
+
+        assertTrue(AtomFieldDecoder.parseTitleMagnitude(title).isNaN())
+        assertEquals(0, AtomFieldDecoder.titlePlaceStart(title))
+    }
+}
@@ -0,0 +1,82 @@
+package com.jjuncoder.sideproject.earthquake.parser
+
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.kxml2.io.KXmlParser
+import java.time.Instant
+
+class EarthquakeFeedParserTest {
+    private fun parseFixture(parser: EarthquakeFeedParser, name: String = "2.5_day.atom"): List<Earthquake> =
+        javaClass.getResourceAsStream("/feed/$name")!!.use {
+            parser.parse(it).toList()
+        }
+
+    @Test
+    fun pullParser_readsEveryEntry() {
+        val earthquakes = parseFixture(PullFeedParser { KXmlParser() })
+
+        assertEquals(8, earthquakes.size)
+        assertEquals("urn:earthquake-usgs-gov:us:6000dlvk", earthquakes.first().id)
+        assertEquals(4.6, earthquakes.first().magnitude, 0.0)
+        assertEquals(35.0, earthquakes.first().depthKm, 0.0)
+        assertEquals("113 km SE of Katsuura, Japan", earthquakes.first().details)
+        assertEquals(Instant.parse("2021-03-20T09:48:32.040Z").toEpochMilli(), earthquakes.first().updated)
+        assertEquals("urn:earthquake-usgs-gov:hv:72393702", earthquakes.last().id)
+    }
+
+    @Test
+    fun pullParser_matchesDomParser() {
+        val dom = parseFixture(DomFeedParser())
+        val pull = parseFixture(PullFeedParser { KXmlParser() })
+
+        assertEquals(dom, pull)
+    }
+
+    @Test
+    fun geoJsonParser_matchesAtomFeed() {
+        val atom = parseFixture(PullFeedParser { KXmlParser() })
+        val geoJson = parseFixture(GeoJsonFeedParser(), "2.5_day.geojson")
+
+        assertEquals(atom, geoJson)
+    }
+
+    @Test
+    fun geoJsonParser_skipsIncompleteFeatures() {
+        val json = """
+            {"type":"FeatureCollection","features":[
+              {"type":"Feature","properties":{"mag":null,"place":"10 km N of Nowhere","updated":1616233712040,"net":"us","code":"1"},
+               "geometry":{"type":"Point","coordinates":[141.0,34.5,10.0]},"id":"us1"},
+              {"type":"Feature","properties":{"mag":2.1,"place":"Somewhere","updated":1616233712040,"net":"us","code":"2"},
+               "geometry":null,"id":"us2"}
+            ]}
+        """.trimIndent()
+
+        val earthquakes = GeoJsonFeedParser().parse(json.byteInputStream()).toList()
+
+        assertEquals(1, earthquakes.size)
+        assertEquals("urn:earthquake-usgs-gov:us:1", earthquakes[0].id)
+        assertEquals(34.5, earthquakes[0].latitude, 0.0)
+        assertTrue(earthquakes[0].magnitude.isNaN())
+    }
+
+    @Test
+    fun geoJsonParser_malformedBodyIsFeedFormatException() {
+        val bodies = listOf(
+            """{"features":[{"geometry":{"coordinates":["east",34.5]}}]}""",
+            """{"features":{}}""",
+            """{"features":[{"id": }]}"""
+        )
+
+        for (body in bodies) {
+            val failure = try {
+                GeoJsonFeedParser().parse(body.byteInputStream()).toList()
+                null
+            } catch (e: FeedFormatException) {
+                e
+            }
+            assertTrue(body, failure != null)
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.jjuncoder.sideproject.earthquake.query
+
+import com.jjuncoder.sideproject.earthquake.geo.GeoMath
+import com.jjuncoder.sideproject.earthquake.geo.RelativePositions
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import com.jjuncoder.sideproject.earthquake.model.EarthquakeDataset
+import com.jjuncoder.sideproject.earthquake.model.SortedEarthquakeList
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.util.*
+
+class EarthquakeQueryIndexTest {
+    private val now = 1_616_233_712_040L
+    private val hour = 3_600_000L
+    private val random = Random(13)
+
+    // shuffled, with equal times and magnitudes and a few without magnitude
+    private val dataset = EarthquakeDataset.of(List(3_000) {
+        Earthquake(
+            "id$it", now - random.nextInt(24 * 30) * hour, "place",
+            random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180,
+            if (it % 40 == 0) Double.NaN else random.nextInt(80) / 10.0
+        )
+    }.shuffled(random))
+    private val index = EarthquakeQueryIndex.build(dataset)
+
+    private fun bruteForce(query: EarthquakeQuery, relativePositions: RelativePositions?): List<Earthquake> {
+        val cutoff = query.cutoffMillis(now)
+        val matching = dataset.filter { it.updated >= cutoff && (query.minMagnitude == null || it.magnitude >= query.minMagnitude) }
+        return when (query.sort) {
+            EarthquakeQuery.Sort.TIME -> matching.sortedWith(SortedEarthquakeList.NEWEST_FIRST)
+            EarthquakeQuery.Sort.MAGNITUDE -> matching.sortedWith(
+                compareByDescending<Earthquake> { if (it.magnitude.isNaN()) Double.NEGATIVE_INFINITY else it.magnitude }
+                    .then(SortedEarthquakeList.NEWEST_FIRST)
+            )
+            EarthquakeQuery.Sort.DISTANCE -> matching.sortedWith(
+                compareBy<Earthquake> {
+                    val position = relativePositions?.indexOf(it.id) ?: -1
+                    if (position >= 0) relativePositions!!.distanceKm(position) else Float.MAX_VALUE
+                }.then(SortedEarthquakeList.NEWEST_FIRST)
+            )
+        }
+    }
+
+    @Test
+    fun query_matchesFilteringEveryRow() {
+        val relativePositions = RelativePositions.compute(dataset, 37.5, 127.0)
+        for (minMagnitude in listOf(null, 0.0, 2.5, 4.5, 7.5, 9.0)) {
+            for (windowMillis in listOf(null, 0L, hour, 24 * hour, 7 * 24 * hour)) {
+                for (sort in EarthquakeQuery.Sort.values()) {
+                    val query = EarthquakeQuery(minMagnitude, windowMillis, sort)
+
+                    val result = index.query(query, now, relativePositions)
+
+                    assertEquals(query.toString(), bruteForce(query, relativePositions), result)
+                }
+            }
+        }
+    }
+
+    @Test
+    fun query_all() {
+        val result = index.query(EarthquakeQuery.ALL, now)
+
+        assertEquals(dataset.sortedWith(SortedEarthquakeList.NEWEST_FIRST), result)
+    }
+
+    @Test
+    fun all_ofStoreOrderedDatasetMatchesIndexedQuery() {
+        val stored = EarthquakeDataset.of(dataset.sortedWith(SortedEarthquakeList.NEWEST_FIRST))
+
+        val result = EarthquakeQueryResult.all(stored)
+
+        assertEquals(EarthquakeQueryIndex.build(stored).query(EarthquakeQuery.ALL, now), result)
+        assertEquals(EarthquakeQuery.ALL, result.query)
+    }
+
+    @Test
+    fun query_distanceFromOtherDatasetPutsUnknownRowsLast() {
+        val known = EarthquakeDataset.of(dataset.take(100))
+        val relativePositions = RelativePositions.compute(known, 0.0, 0.0)
+
+        val result = index.query(EarthquakeQuery(sort = EarthquakeQuery.Sort.DISTANCE), now, relativePositions)
+
+        val expected = known.sortedBy { GeoMath.distanceKm(0.0, 0.0, it.latitude, it.longitude) }
+        assertEquals(expected.map { it.id }, result.take(100).map { it.id })
+        assertEquals(
+            dataset.drop(100).sortedWith(SortedEarthquakeList.NEWEST_FIRST),
+            result.drop(100)
+        )
+    }
+}
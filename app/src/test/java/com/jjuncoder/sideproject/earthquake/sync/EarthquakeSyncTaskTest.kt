@@ -0,0 +1,87 @@
+package com.jjuncoder.sideproject.earthquake.sync
+
+import com.jjuncoder.sideproject.earthquake.FeedSpec
+import com.jjuncoder.sideproject.earthquake.benchmark.LocalFeedServer
+import com.jjuncoder.sideproject.earthquake.benchmark.SyntheticFeed
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import com.jjuncoder.sideproject.earthquake.parser.PullFeedParser
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.kxml2.io.KXmlParser
+import java.sql.SQLException
+
+class EarthquakeSyncTaskTest {
+    private var nowMillis = 1_616_234_400_000L
+    private val clock = { nowMillis }
+    private val stored = ArrayList<Earthquake>()
+    private val parser = PullFeedParser { KXmlParser() }
+
+    private fun task(specs: List<FeedSpec>, store: suspend (List<Earthquake>) -> Unit = { stored.addAll(it) }) =
+        EarthquakeSyncTask(specs, parser = parser, clock = clock, store = store)
+
+    @Test
+    fun run_storesEntriesAndRecordsDurationAndCount() = runBlocking {
+        LocalFeedServer().use { server ->
+            val spec = server.serve("day", SyntheticFeed(120).toByteArray())
+            val report = task(listOf(spec)) {
+                nowMillis += 250
+                stored.addAll(it)
+            }.run()
+
+            assertEquals(EarthquakeSyncTask.Outcome.SUCCESS, report.outcome)
+            assertEquals(120, report.entries)
+            assertEquals(120, stored.size)
+            assertEquals(1_616_234_400_000L, report.startedAtMillis)
+            assertEquals(250, report.durationMillis)
+            assertEquals(1, report.feeds)
+            assertEquals(0, report.failedFeeds)
+        }
+    }
+
+    @Test
+    fun run_partialFailureStillStoresOtherFeeds() = runBlocking {
+        LocalFeedServer().use { server ->
+            val spec = server.serve("day", SyntheticFeed(30).toByteArray())
+            val missing = FeedSpec("missing", spec.url.replace("day", "missing"))
+            val report = task(listOf(spec, missing)).run()
+
+            assertEquals(EarthquakeSyncTask.Outcome.SUCCESS, report.outcome)
+            assertEquals(30, report.entries)
+            assertEquals(1, report.failedFeeds)
+            assertNotNull(report.error)
+        }
+    }
+
+    @Test
+    fun run_retriesWhenNetworkOrStoreFails() = runBlocking {
+        val spec = LocalFeedServer().use { it.serve("day", SyntheticFeed(10).toByteArray()) }
+        // the server is closed, the connection is refused
+        val offline = task(listOf(spec)).run()
+        assertEquals(EarthquakeSyncTask.Outcome.RETRY, offline.outcome)
+        assertEquals(0, offline.entries)
+
+        LocalFeedServer().use { server ->
+            val report = task(listOf(server.serve("day", SyntheticFeed(10).toByteArray()))) {
+                throw SQLException("database is locked")
+            }.run()
+            assertEquals(EarthquakeSyncTask.Outcome.RETRY, report.outcome)
+            assertEquals(0, report.entries)
+            assertTrue(report.error!!.contains("locked"))
+        }
+    }
+
+    @Test
+    fun run_failsWithoutRetryWhenEveryFeedIsRejected() = runBlocking {
+        LocalFeedServer().use { server ->
+            val spec = server.serve("day", SyntheticFeed(10).toByteArray())
+            val report = task(listOf(FeedSpec("missing", spec.url.replace("day", "missing")))).run()
+
+            assertEquals(EarthquakeSyncTask.Outcome.FAILURE, report.outcome)
+            assertEquals(1, report.failedFeeds)
+            assertTrue(stored.isEmpty())
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.jjuncoder.sideproject.earthquake.viewmodel
+
+import com.jjuncoder.sideproject.earthquake.model.Earthquake
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Test
+import java.util.*
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class EarthquakeRowTextsTest {
+    private val rowTexts = EarthquakeRowTexts(TimeZone.getTimeZone("Asia/Seoul"))
+
+    // 2021-03-20 18:48:32 KST
+    private val earthquake = Earthquake("us7000dflf", 1_616_233_712_040L, "Ōfunato, Japan", 38.4, 142.1, 7.04)
+
+    @Test
+    fun prepare_formatsTimeAndMagnitude() {
+        rowTexts.prepare(listOf(earthquake))
+
+        assertEquals(EarthquakeRowText(earthquake.updated, "18:48", "7.0"), rowTexts[earthquake])
+    }
+
+    @Test
+    fun get_returnsPreparedText() {
+        rowTexts.prepare(listOf(earthquake))
+        val prepared = rowTexts[earthquake]
+
+        rowTexts.prepare(listOf(earthquake))
+
+        assertSame(prepared, rowTexts[earthquake])
+    }
+
+    @Test
+    fun get_formatsUpdatedEarthquakeAgain() {
+        rowTexts.prepare(listOf(earthquake))
+
+        val updated = earthquake.copy(updated = earthquake.updated + 60_000, magnitude = 7.3)
+
+        assertEquals(EarthquakeRowText(updated.updated, "18:49", "7.3"), rowTexts[updated])
+    }
+
+    @Test
+    fun remove_dropsText() {
+        rowTexts.prepare(listOf(earthquake))
+
+        rowTexts.remove(listOf(earthquake.id))
+
+        assertEquals(0, rowTexts.size)
+    }
+
+    @Test
+    fun prepare_isThreadSafe() {
+        val earthquakes = List(4_000) { earthquake.copy(id = "us$it", updated = earthquake.updated + it * 61_000L, magnitude = it % 90 / 10.0) }
+        val executor = Executors.newFixedThreadPool(4)
+        earthquakes.chunked(1_000).forEach { chunk -> executor.execute { rowTexts.prepare(chunk) } }
+        executor.shutdown()
+        executor.awaitTermination(10, TimeUnit.SECONDS)
+
+        val expected = EarthquakeRowTexts(TimeZone.getTimeZone("Asia/Seoul"))
+        assertEquals(earthquakes.size, rowTexts.size)
+        earthquakes.forEach { assertEquals(expected[it], rowTexts[it]) }
+    }
+}
@@ -0,0 +1,98 @@
+package com.jjuncoder.sideproject.earthquake.viewmodel
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.yield
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class RefreshCoordinatorTest {
+    private var now = 0L
+    private var started = 0
+    private var completed = 0
+    private var gate = CompletableDeferred<Unit>()
+    private var succeeds = true
+
+    private fun runBlockingCoordinator(block: suspend (RefreshCoordinator) -> Unit) = runBlocking {
+        val coordinator = RefreshCoordinator(this, minIntervalMillis = 1_000, clock = { now }) {
+            started++
+            gate.await()
+            completed++
+            succeeds
+        }
+        block(coordinator)
+    }
+
+    @Test
+    fun request_joinsRunningRefresh() = runBlockingCoordinator { coordinator ->
+        val first = coordinator.request()
+        val second = coordinator.request()
+        yield()
+        gate.complete(Unit)
+        first?.join()
+
+        assertSame(first, second)
+        assertEquals(1, started)
+        assertEquals(1, completed)
+    }
+
+    @Test
+    fun request_skipsWithinMinInterval() = runBlockingCoordinator { coordinator ->
+        gate.complete(Unit)
+        coordinator.request()?.join()
+
+        now = 999
+        assertNull(coordinator.request())
+        coordinator.request(force = true)?.join()
+        now = 2_000
+        coordinator.request()?.join()
+
+        assertEquals(3, completed)
+    }
+
+    @Test
+    fun restart_cancelsStaleRefresh() = runBlockingCoordinator { coordinator ->
+        val stale = coordinator.request()
+        yield()
+        val fresh = coordinator.restart()
+        yield()
+        gate.complete(Unit)
+        fresh.join()
+
+        assertTrue(stale!!.isCancelled)
+        assertEquals(2, started)
+        assertEquals(1, completed)
+    }
+
+    @Test
+    fun request_afterFailureIsNotThrottled() = runBlockingCoordinator { coordinator ->
+        val failing = coordinator.request()
+        yield()
+        failing!!.cancel()
+        failing.join()
+
+        now = 1
+        gate.complete(Unit)
+        coordinator.request()!!.join()
+
+        assertEquals(1, completed)
+    }
+
+    @Test
+    fun request_afterEveryFeedFailedIsNotThrottled() = runBlockingCoordinator { coordinator ->
+        succeeds = false
+        gate.complete(Unit)
+        coordinator.request()!!.join()
+
+        now = 1
+        succeeds = true
+        coordinator.request()!!.join()
+        now = 2
+        assertNull(coordinator.request())
+
+        assertEquals(2, completed)
+    }
+}